@@ -0,0 +1,166 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.exception.DictConnectionException;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Executors used by the asynchronous (CompletableFuture) variants of the blocking DICT calls.
+ */
+final class AsyncExecutors {
+
+    /** A blocking DICT call to be run on an executor.
+     */
+    interface Call<T> {
+        T call() throws DictConnectionException;
+    }
+
+    private static final Executor DEFAULT = createDefault();
+
+    private AsyncExecutors() {
+    }
+
+    /** Returns the shared default executor: one virtual thread per task when the runtime supports virtual threads
+     * (Java 21+), otherwise a cached pool of daemon platform threads. Blocked calls are cheap on virtual threads, so
+     * waiting on the socket doesn't tie up a platform thread.
+     *
+     * @return The default executor for asynchronous calls.
+     */
+    static Executor defaultExecutor() {
+        return DEFAULT;
+    }
+
+    /** Runs a blocking call on an executor. A DictConnectionException thrown by the call completes the future
+     * exceptionally with that exception as the cause.
+     *
+     * @param call     The blocking call.
+     * @param executor Executor the call runs on.
+     * @return A future completed with the result of the call.
+     */
+    static <T> CompletableFuture<T> supply(Call<T> call, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return call.call();
+            }
+            catch (DictConnectionException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /** Waits for a future and returns its value, turning its failure back into the exception thrown by the call.
+     *
+     * @param future The future.
+     * @return The value of the future.
+     * @throws DictConnectionException If the future failed with a DictConnectionException (or a checked exception,
+     * which is wrapped), or the waiting thread was interrupted.
+     */
+    static <T> T await(CompletableFuture<T> future) throws DictConnectionException {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DictConnectionException("interrupted while waiting for a reply");
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof DictConnectionException) {
+                throw (DictConnectionException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new DictConnectionException(cause);
+        }
+    }
+
+    /** Waits for a future until a deadline, see await. The future is left running if the deadline expires.
+     *
+     * @param future   The future.
+     * @param deadline The deadline, Deadline.none() to wait as long as it takes.
+     * @return The value of the future.
+     * @throws DictConnectionException If the future failed, see await, or DictTimeoutException if the deadline expired
+     * first.
+     */
+    static <T> T await(CompletableFuture<T> future, Deadline deadline) throws DictConnectionException {
+        if (!deadline.isNone()) {
+            try {
+                future.get(deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+            }
+            catch (TimeoutException e) {
+                throw new DictTimeoutException("deadline expired while waiting for a reply");
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DictConnectionException("interrupted while waiting for a reply");
+            }
+            catch (ExecutionException e) {
+                //rethrown below
+            }
+        }
+        return await(future);
+    }
+
+    /** Waits for all futures to complete, then rethrows the first failure, if any.
+     *
+     * @param futures The futures.
+     * @throws DictConnectionException If one of the futures failed, see await.
+     */
+    static void awaitAll(Iterable<? extends CompletableFuture<?>> futures) throws DictConnectionException {
+        awaitAll(futures, Deadline.none());
+    }
+
+    /** Waits for all futures to complete or for a deadline, whichever comes first, then rethrows the first failure, if
+     * any. Futures still running when the deadline expires count as failed with a DictTimeoutException.
+     *
+     * @param futures  The futures.
+     * @param deadline The deadline, Deadline.none() to wait as long as it takes.
+     * @throws DictConnectionException If one of the futures failed or didn't complete in time, see await.
+     */
+    static void awaitAll(Iterable<? extends CompletableFuture<?>> futures, Deadline deadline) throws DictConnectionException {
+        DictConnectionException firstFailure = null;
+        for (CompletableFuture<?> future : futures) {
+            try {
+                await(future, deadline);
+            }
+            catch (DictConnectionException e) {
+                if (firstFailure == null) {
+                    firstFailure = e;
+                }
+            }
+        }
+        if (firstFailure != null) {
+            throw firstFailure;
+        }
+    }
+
+    private static Executor createDefault() {
+        try {
+            //looked up reflectively so the code still runs on runtimes without virtual threads
+            return (ExecutorService) MethodHandles.publicLookup()
+                    .findStatic(Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class))
+                    .invoke();
+        }
+        catch (Throwable e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "dict-async-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package ca.ubc.cs317.dict.net;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/** Exponential backoff with full jitter: the delay before attempt n is drawn uniformly between 0 and
+ * min(max, initial * 2^(n-1)). The randomness spreads out the clients that failed together, so they don't all come
+ * back at the same instant and knock the server over again.
+ */
+final class Backoff {
+
+    private final long initialNanos;
+    private final long maxNanos;
+
+    Backoff(long initial, long max, TimeUnit unit) {
+        if (initial <= 0 || max < initial) {
+            throw new IllegalArgumentException("invalid backoff range");
+        }
+        this.initialNanos = unit.toNanos(initial);
+        this.maxNanos = unit.toNanos(max);
+    }
+
+    /** @param failures Number of consecutive failures so far, at least 1.
+     * @return The delay to wait before the next attempt, in nanoseconds.
+     */
+    long delayNanos(int failures) {
+        long ceiling = initialNanos;
+        for (int i = 1; i < failures && ceiling < maxNanos; i++) {
+            ceiling = ceiling < maxNanos / 2 ? ceiling << 1 : maxNanos;
+        }
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+}
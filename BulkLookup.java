@@ -0,0 +1,171 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.exception.DictConnectionException;
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/** Looks up large batches of words (e.g. a document glossary), or one word under many strategies and databases,
+ * against one DICT server. The words are spread over
+ * several pooled connections, and the DEFINE commands on each connection are pipelined, so a batch costs roughly one
+ * round trip per pipeline window instead of one per word. The pipeline depth bounds the number of commands in flight
+ * per connection, which keeps both sides' buffers bounded however large the batch is. A batch is bounded by the deadline
+ * of the calling thread (Deadline.current), on every connection it uses.
+ */
+public class BulkLookup {
+
+    private static final int DEFAULT_PORT = 2628;
+
+    private final DictionaryConnectionPool pool;
+    private final String host;
+    private final int port;
+    private int connections = 4;
+    private int depth = CommandPipeline.DEFAULT_DEPTH;
+
+    /** @param pool Pool the connections are borrowed from.
+     * @param host Name of the host where the DICT server is running
+     */
+    public BulkLookup(DictionaryConnectionPool pool, String host) {
+        this(pool, host, DEFAULT_PORT);
+    }
+
+    /** @param pool Pool the connections are borrowed from.
+     * @param host Name of the host where the DICT server is running
+     * @param port Port number used by the DICT server
+     */
+    public BulkLookup(DictionaryConnectionPool pool, String host, int port) {
+        this.pool = pool;
+        this.host = host;
+        this.port = port;
+    }
+
+    /** Sets the maximum number of connections used in parallel by one batch. Defaults to 4.
+     *
+     * @param connections Number of connections, at least 1.
+     * @return This object.
+     */
+    public BulkLookup setConnections(int connections) {
+        if (connections < 1) {
+            throw new IllegalArgumentException("at least one connection is needed");
+        }
+        this.connections = connections;
+        return this;
+    }
+
+    /** Sets the maximum number of commands in flight on each connection. Defaults to CommandPipeline.DEFAULT_DEPTH.
+     *
+     * @param depth Pipeline depth, at least 1.
+     * @return This object.
+     */
+    public BulkLookup setDepth(int depth) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("depth must be at least 1");
+        }
+        this.depth = depth;
+        return this;
+    }
+
+    /** Retrieves the definitions of every word in a batch.
+     *
+     * @param words    The words to look up. Duplicates are only looked up once.
+     * @param database The database to be used to retrieve the definitions.
+     * @return A map from each word (in the order of the input) to its definitions, empty if there are none.
+     * @throws DictConnectionException If some of the words could not be looked up.
+     */
+    public Map<String, Collection<Definition>> defineAll(Collection<String> words, Database database) throws DictConnectionException {
+        Map<String, Collection<Definition>> results = new ConcurrentHashMap<>();
+        defineAll(words, database, results::put);
+
+        Map<String, Collection<Definition>> ordered = new LinkedHashMap<>();
+        for (String word : words) {
+            Collection<Definition> definitions = results.get(word);
+            if (definitions != null) {
+                ordered.put(word, definitions);
+            }
+        }
+        return ordered;
+    }
+
+    /** Retrieves the definitions of every word in a batch and hands each result over as soon as its reply has been
+     * read. The consumer is called from several threads at once (one per connection) and must be thread safe.
+     *
+     * @param words    The words to look up. Duplicates are only looked up once.
+     * @param database The database to be used to retrieve the definitions.
+     * @param consumer Receives each word with its definitions (empty if there are none).
+     * @throws DictConnectionException If some of the words could not be looked up. Results of the other words have
+     * been handed over already. An exception thrown by the consumer is rethrown the same way.
+     */
+    public void defineAll(Collection<String> words, Database database, BiConsumer<String, Collection<Definition>> consumer) throws DictConnectionException {
+        List<String> unique = new ArrayList<>(new LinkedHashSet<>(words));
+        if (unique.isEmpty()) {
+            return;
+        }
+
+        //connections take chunks from a shared cursor, so a slow connection doesn't hold back the others
+        int chunk = depth * 8;
+        AtomicInteger cursor = new AtomicInteger();
+        int parallelism = Math.min(connections, (unique.size() + chunk - 1) / chunk);
+        Deadline deadline = Deadline.current();
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < parallelism; i++) {
+            //each task runs under the deadline of the caller, see executeAsync
+            tasks.add(pool.executeAsync(host, port, connection -> {
+                List<CompletableFuture<Void>> handedOver = new ArrayList<>();
+                int start;
+                while ((start = cursor.getAndAdd(chunk)) < unique.size()) {
+                    CommandPipeline pipeline = connection.pipeline().setDepth(depth);
+                    for (String word : unique.subList(start, Math.min(start + chunk, unique.size()))) {
+                        handedOver.add(pipeline.define(word, database).thenAccept(definitions -> consumer.accept(word, definitions)));
+                    }
+                    pipeline.execute();
+                }
+                //a word rejected by the server, or an exception thrown by the consumer, must reach the caller
+                AsyncExecutors.awaitAll(handedOver);
+                return null;
+            }));
+        }
+        AsyncExecutors.awaitAll(tasks, deadline);
+    }
+
+    /** Matches one word under every combination of the given strategies and databases, e.g. for autocomplete and
+     * spelling suggestions. All the MATCH commands are sent in a single pipelined batch on one connection, and the
+     * replies are merged by (database, strategy). Matches obtained through '*' or '!' are attributed to the database
+     * they come from. A pair the server rejects (550 invalid database, 551 invalid strategy) is recorded in the result
+     * (MultiMatchResult.getFailure) and the matches of the other pairs are still returned.
+     *
+     * @param word       The word pattern to be matched.
+     * @param strategies The strategies to be used (e.g. prefix, lev, soundex).
+     * @param databases  The databases to be searched.
+     * @return The matches grouped by database and strategy.
+     * @throws DictConnectionException If the connection was interrupted or the messages don't match their expected value.
+     */
+    public MultiMatchResult matchAll(String word, Collection<MatchingStrategy> strategies, Collection<Database> databases) throws DictConnectionException {
+        MultiMatchResult result = new MultiMatchResult(word);
+        if (strategies.isEmpty() || databases.isEmpty()) {
+            return result;
+        }
+        return pool.execute(host, port, connection -> {
+            CommandPipeline pipeline = connection.pipeline().setDepth(depth);
+            for (Database database : databases) {
+                for (MatchingStrategy strategy : strategies) {
+                    //replies are read on this thread, one at a time, so the result needs no locking
+                    pipeline.match(word, strategy, database,
+                            (databaseName, match) -> result.add(databaseName, strategy.getName(), match))
+                            .whenComplete((count, failure) -> {
+                                if (failure instanceof DictStatusException) {
+                                    result.fail(database.getName(), strategy.getName(), (DictStatusException) failure);
+                                }
+                            });
+                }
+            }
+            pipeline.execute();
+            return result;
+        });
+    }
+}
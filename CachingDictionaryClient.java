@@ -0,0 +1,124 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.exception.DictConnectionException;
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/** Decorates a DictionaryClient with a local cache of DEFINE and MATCH replies, keyed by (command, database, strategy,
+ * word). Lookups that hit the cache don't go to the wrapped client at all. The wrapper is safe to share across
+ * threads; cached collections are unmodifiable.
+ */
+public class CachingDictionaryClient extends ForwardingDictionaryClient {
+
+    private final ResultCache<LookupKey, Collection<Definition>> definitions;
+    private final ResultCache<LookupKey, Set<String>> matches;
+    private volatile NegativeResultCache negativeCache;
+
+    /** Creates a caching wrapper. DEFINE and MATCH replies are cached separately, each with the given limits.
+     *
+     * @param client     Client used on cache misses.
+     * @param maxEntries Maximum number of cached replies per command.
+     * @param ttl        Time after which a cached reply expires.
+     * @param unit       Unit of the time-to-live.
+     */
+    public CachingDictionaryClient(DictionaryClient client, int maxEntries, long ttl, TimeUnit unit) {
+        super(client);
+        this.definitions = new ResultCache<>(maxEntries, ttl, unit);
+        this.matches = new ResultCache<>(maxEntries, ttl, unit);
+    }
+
+    /** Adds a negative cache, used to answer requests the server recently answered with "no match" (552). Empty
+     * replies are then recorded in the negative cache instead of the regular one. The negative cache is cleared every
+     * time the database catalog of the wrapped client changes.
+     *
+     * @param negativeCache The negative cache, or null to remove it.
+     */
+    public void setNegativeCache(NegativeResultCache negativeCache) {
+        NegativeResultCache previous = this.negativeCache;
+        if (previous != null) {
+            delegate.getCatalog().removeListener(previous);
+        }
+        if (negativeCache != null) {
+            delegate.getCatalog().addListener(negativeCache);
+        }
+        this.negativeCache = negativeCache;
+    }
+
+    /** Returns the definitions for a word, from the cache if possible. See DictionaryClient.getDefinitions.
+     *
+     * @param word     The word whose definition is to be retrieved.
+     * @param database The database to be used to retrieve the definition.
+     * @return An unmodifiable collection of Definition objects.
+     * @throws DictConnectionException If the reply was not cached and the server could not be reached.
+     */
+    @Override
+    public Collection<Definition> getDefinitions(String word, Database database) throws DictConnectionException {
+        LookupKey key = LookupKey.define(database.getName(), word);
+        NegativeResultCache negative = negativeCache;
+        if (negative != null && negative.isKnownMissing(key)) {
+            return Collections.emptyList();
+        }
+        Collection<Definition> cached = definitions.get(key);
+        if (cached == null) {
+            cached = Collections.unmodifiableList(new ArrayList<>(delegate.getDefinitions(word, database)));
+            if (negative != null && cached.isEmpty()) {
+                negative.recordMissing(key);
+            }
+            else {
+                definitions.put(key, cached);
+            }
+        }
+        return cached;
+    }
+
+    /** Returns the matches for a word pattern, from the cache if possible. See DictionaryClient.getMatchList.
+     *
+     * @param word     The word pattern to be matched.
+     * @param strategy The strategy to be used to retrieve the list of matches.
+     * @param database The database to be used to retrieve the matches.
+     * @return An unmodifiable set of word matches.
+     * @throws DictConnectionException If the reply was not cached and the server could not be reached.
+     */
+    @Override
+    public Set<String> getMatchList(String word, MatchingStrategy strategy, Database database) throws DictConnectionException {
+        LookupKey key = LookupKey.match(database.getName(), strategy.getName(), word);
+        NegativeResultCache negative = negativeCache;
+        if (negative != null && negative.isKnownMissing(key)) {
+            return Collections.emptySet();
+        }
+        Set<String> cached = matches.get(key);
+        if (cached == null) {
+            cached = Collections.unmodifiableSet(new LinkedHashSet<>(delegate.getMatchList(word, strategy, database)));
+            if (negative != null && cached.isEmpty()) {
+                negative.recordMissing(key);
+            }
+            else {
+                matches.put(key, cached);
+            }
+        }
+        return cached;
+    }
+
+    /** Removes every cached reply.
+     */
+    public void invalidateAll() {
+        definitions.invalidateAll();
+        matches.invalidateAll();
+    }
+
+    /** @return Statistics of the DEFINE reply cache.
+     */
+    public ResultCache.Statistics getDefinitionStatistics() {
+        return definitions.getStatistics();
+    }
+
+    /** @return Statistics of the MATCH reply cache.
+     */
+    public ResultCache.Statistics getMatchStatistics() {
+        return matches.getStatistics();
+    }
+}
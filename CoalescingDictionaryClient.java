@@ -0,0 +1,118 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.exception.DictConnectionException;
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Decorates a DictionaryClient so that concurrent identical DEFINE and MATCH requests share a single call to the
+ * wrapped client (single-flight). The first caller for a given (command, database, strategy, word) sends the request;
+ * callers arriving while it is in flight wait for it and receive the same result, or the same exception. Shared
+ * results are unmodifiable.
+ *
+ * Each caller waits no longer than its own deadline (Deadline.current). A caller whose deadline is later than that of
+ * the request it joined doesn't fail with its timeout: it sends the request again, or joins the next one in flight.
+ */
+public class CoalescingDictionaryClient extends ForwardingDictionaryClient {
+
+    private final ConcurrentMap<LookupKey, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+
+    /** @param client Client used to send the requests.
+     */
+    public CoalescingDictionaryClient(DictionaryClient client) {
+        super(client);
+    }
+
+    /** See DictionaryClient.getDefinitions. Joins an identical request already in flight, if any.
+     *
+     * @param word     The word whose definition is to be retrieved.
+     * @param database The database to be used to retrieve the definition.
+     * @return An unmodifiable collection of Definition objects.
+     * @throws DictConnectionException If the connection was interrupted or the messages don't match their expected value.
+     */
+    @Override
+    public Collection<Definition> getDefinitions(String word, Database database) throws DictConnectionException {
+        return coalesce(LookupKey.define(database.getName(), word),
+                () -> Collections.unmodifiableCollection(delegate.getDefinitions(word, database)));
+    }
+
+    /** See DictionaryClient.getMatchList. Joins an identical request already in flight, if any.
+     *
+     * @param word     The word pattern to be matched.
+     * @param strategy The strategy to be used to retrieve the list of matches.
+     * @param database The database to be used to retrieve the matches.
+     * @return An unmodifiable set of word matches.
+     * @throws DictConnectionException If the connection was interrupted or the messages don't match their expected value.
+     */
+    @Override
+    public Set<String> getMatchList(String word, MatchingStrategy strategy, Database database) throws DictConnectionException {
+        return coalesce(LookupKey.match(database.getName(), strategy.getName(), word),
+                () -> Collections.unmodifiableSet(delegate.getMatchList(word, strategy, database)));
+    }
+
+    /** @return Number of DEFINE and MATCH requests received.
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /** @return Number of DEFINE and MATCH requests that were answered by joining an identical request in flight,
+     * instead of going to the wrapped client.
+     */
+    public long getDeduplicatedCount() {
+        return deduplicated.sum();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T coalesce(LookupKey key, AsyncExecutors.Call<T> call) throws DictConnectionException {
+        requests.increment();
+        Deadline deadline = Deadline.current();
+        boolean retried = false;
+        while (true) {
+            CompletableFuture<Object> mine = new CompletableFuture<>();
+            CompletableFuture<Object> existing = inFlight.putIfAbsent(key, mine);
+            if (existing == null) {
+                return lead(key, mine, call);
+            }
+            if (!retried) {
+                deduplicated.increment();
+            }
+            try {
+                return (T) AsyncExecutors.await(existing, deadline);
+            }
+            catch (DictTimeoutException e) {
+                //the request joined may have run out of time before this caller did, try once more
+                if (retried || deadline.isExpired() || !existing.isCompletedExceptionally()) {
+                    throw e;
+                }
+                retried = true;
+            }
+        }
+    }
+
+    private <T> T lead(LookupKey key, CompletableFuture<Object> mine, AsyncExecutors.Call<T> call)
+            throws DictConnectionException {
+        try {
+            T result = call.call();
+            mine.complete(result);
+            return result;
+        }
+        //errors too, the callers waiting on this request must not wait forever
+        catch (Throwable e) {
+            mine.completeExceptionally(e);
+            throw e;
+        }
+        finally {
+            //later callers must send a new request, the reply may change
+            inFlight.remove(key, mine);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.exception.DictConnectionException;
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/** Batch of DEFINE and MATCH commands to be pipelined on a single DictionaryConnection, as allowed by RFC 2229. Each
+ * command added to the pipeline returns a future; nothing is sent until execute is called, at which point the commands
+ * are written back-to-back and the replies are read in the order the commands were sent.
+ */
+public class CommandPipeline {
+
+    public static final int DEFAULT_DEPTH = 32;
+
+    private final DictionaryConnection connection;
+    private final List<Command<?>> commands = new ArrayList<>();
+    private int depth = DEFAULT_DEPTH;
+
+    /** Creates an empty pipeline. Use DictionaryConnection.pipeline to obtain one.
+     *
+     * @param connection Connection used to execute the pipeline.
+     */
+    CommandPipeline(DictionaryConnection connection) {
+        this.connection = connection;
+    }
+
+    /** Queues a DEFINE command.
+     *
+     * @param word     The word whose definition is to be retrieved.
+     * @param database The database to be used to retrieve the definition.
+     * @return A future completed with the definitions once the pipeline is executed.
+     */
+    public CompletableFuture<Collection<Definition>> define(String word, Database database) {
+        return add(new Command<Collection<Definition>>(DictMetrics.Command.DEFINE,
+                DictionaryConnection.defineCommand(word, database), Collection::size) {
+            @Override
+            Collection<Definition> read(DictionaryConnection connection, DatabaseCatalog.Snapshot databases) throws IOException, DictConnectionException {
+                return connection.readDefinitions(word, databases);
+            }
+        });
+    }
+
+    /** Queues a DEFINE command whose definitions are handed over to a consumer as soon as each one is read, instead of
+     * being collected.
+     *
+     * @param word     The word whose definition is to be retrieved.
+     * @param database The database to be used to retrieve the definition.
+     * @param consumer Receives the definitions in the order they are returned by the server.
+     * @return A future completed with the number of definitions once the reply has been read.
+     */
+    public CompletableFuture<Integer> define(String word, Database database, Consumer<? super Definition> consumer) {
+        return add(new Command<Integer>(DictMetrics.Command.DEFINE,
+                DictionaryConnection.defineCommand(word, database), Integer::intValue) {
+            @Override
+            Integer read(DictionaryConnection connection, DatabaseCatalog.Snapshot databases) throws IOException, DictConnectionException {
+                return connection.readDefinitions(word, databases, consumer);
+            }
+        });
+    }
+
+    /** Queues a MATCH command.
+     *
+     * @param word     The word pattern to be matched.
+     * @param strategy The strategy to be used to retrieve the list of matches.
+     * @param database The database to be used to retrieve the matches.
+     * @return A future completed with the matches once the pipeline is executed.
+     */
+    public CompletableFuture<Set<String>> match(String word, MatchingStrategy strategy, Database database) {
+        return add(new Command<Set<String>>(DictMetrics.Command.MATCH,
+                DictionaryConnection.matchCommand(word, strategy, database), Set::size) {
+            @Override
+            Set<String> read(DictionaryConnection connection, DatabaseCatalog.Snapshot databases) throws IOException, DictConnectionException {
+                return connection.readMatches();
+            }
+        });
+    }
+
+    /** Queues a MATCH command whose matches keep the database they come from.
+     *
+     * @param word     The word pattern to be matched.
+     * @param strategy The strategy to be used to retrieve the list of matches.
+     * @param database The database to be used to retrieve the matches.
+     * @return A future completed with the (database, word) pairs once the pipeline is executed.
+     */
+    public CompletableFuture<MatchResult> matches(String word, MatchingStrategy strategy, Database database) {
+        return add(new Command<MatchResult>(DictMetrics.Command.MATCH,
+                DictionaryConnection.matchCommand(word, strategy, database), MatchResult::size) {
+            @Override
+            MatchResult read(DictionaryConnection connection, DatabaseCatalog.Snapshot databases) throws IOException, DictConnectionException {
+                MatchResult.Builder result = new MatchResult.Builder();
+                connection.readMatches(result);
+                return result.build();
+            }
+        });
+    }
+
+    /** Queues a MATCH command whose matches are handed over with the database they come from, which matters when the
+     * database is '*' or '!'.
+     *
+     * @param word     The word pattern to be matched.
+     * @param strategy The strategy to be used to retrieve the list of matches.
+     * @param database The database to be used to retrieve the matches.
+     * @param consumer Receives the database name and the word of each match, in the order returned by the server.
+     * @return A future completed with the number of matches once the reply has been read.
+     */
+    public CompletableFuture<Integer> match(String word, MatchingStrategy strategy, Database database, BiConsumer<String, String> consumer) {
+        return add(new Command<Integer>(DictMetrics.Command.MATCH,
+                DictionaryConnection.matchCommand(word, strategy, database), Integer::intValue) {
+            @Override
+            Integer read(DictionaryConnection connection, DatabaseCatalog.Snapshot databases) throws IOException, DictConnectionException {
+                return connection.readMatches(consumer);
+            }
+        });
+    }
+
+    /** Sets the maximum number of commands that are written before their replies are read. Larger values hide more
+     * latency but need more buffer space on both sides of the connection.
+     *
+     * @param depth Maximum number of outstanding commands, at least 1.
+     * @return This pipeline.
+     */
+    public CommandPipeline setDepth(int depth) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("depth must be at least 1");
+        }
+        this.depth = depth;
+        return this;
+    }
+
+    /** @return The number of commands waiting to be executed.
+     */
+    public int size() {
+        return commands.size();
+    }
+
+    /** Sends all queued commands and completes their futures. The pipeline is empty afterwards and may be reused. A
+     * command rejected by the server with a status line (e.g. 550 invalid database, 551 invalid strategy) only
+     * completes its own future exceptionally; the other commands are not affected.
+     *
+     * @throws DictConnectionException If the connection was interrupted or the messages don't match their expected
+     * value. Commands whose replies could not be read are completed exceptionally with the same exception, and the
+     * connection is closed.
+     */
+    public void execute() throws DictConnectionException {
+        List<Command<?>> batch = new ArrayList<>(commands);
+        commands.clear();
+        connection.execute(batch, depth);
+    }
+
+    private <T> CompletableFuture<T> add(Command<T> command) {
+        commands.add(command);
+        return command.result;
+    }
+
+    /** A command waiting in a pipeline, with the code to read its reply and what to report to the metrics.
+     */
+    abstract static class Command<T> {
+
+        private final DictMetrics.Command type;
+        private final String command;
+        private final ToIntFunction<? super T> results;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Command(DictMetrics.Command type, String command, ToIntFunction<? super T> results) {
+            this.type = type;
+            this.command = command;
+            this.results = results;
+        }
+
+        DictMetrics.Command type() {
+            return type;
+        }
+
+        String command() {
+            return command;
+        }
+
+        abstract T read(DictionaryConnection connection, DatabaseCatalog.Snapshot databases) throws IOException, DictConnectionException;
+
+        /** Reads the reply and completes the future with it.
+         *
+         * @return Number of results in the reply, as reported to the metrics.
+         */
+        int complete(DictionaryConnection connection, DatabaseCatalog.Snapshot databases) throws IOException, DictConnectionException {
+            T value = read(connection, databases);
+            result.complete(value);
+            return results.applyAsInt(value);
+        }
+
+        void fail(Throwable cause) {
+            result.completeExceptionally(cause);
+        }
+    }
+}
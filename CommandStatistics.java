@@ -0,0 +1,144 @@
+package ca.ubc.cs317.dict.net;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Counters and latency histograms of one DICT command, as recorded by DictionaryMetrics. All updates are lock-free.
+ */
+public final class CommandStatistics implements CommandStatisticsMXBean {
+
+    private final DictMetrics.Command command;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram wait = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder lines = new LongAdder();
+    private final LongAdder results = new LongAdder();
+
+    CommandStatistics(DictMetrics.Command command) {
+        this.command = command;
+    }
+
+    void record(long waitNanos, long totalNanos, long written, long read, long parsed, int returned, boolean failed) {
+        latency.record(totalNanos);
+        wait.record(waitNanos);
+        if (failed) {
+            errors.increment();
+        }
+        if (written > 0) {
+            bytesWritten.add(written);
+        }
+        if (read > 0) {
+            bytesRead.add(read);
+        }
+        if (parsed > 0) {
+            lines.add(parsed);
+        }
+        results.add(returned);
+    }
+
+    /** @return The command these statistics are about.
+     */
+    public DictMetrics.Command getCommand() {
+        return command;
+    }
+
+    /** @return Distribution of the total time of the command, from sending it to reading the end of its reply.
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /** @return Distribution of the time spent waiting for the first line of the reply.
+     */
+    public LatencyHistogram getWaitLatency() {
+        return wait;
+    }
+
+    @Override
+    public long getCount() {
+        return latency.getCount();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getLinesParsed() {
+        return lines.sum();
+    }
+
+    @Override
+    public long getResults() {
+        return results.sum();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return latency.getMean() / 1000;
+    }
+
+    @Override
+    public long getP50Micros() {
+        return latency.getValueAtPercentile(50, TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public long getP90Micros() {
+        return latency.getValueAtPercentile(90, TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public long getP99Micros() {
+        return latency.getValueAtPercentile(99, TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public long getP999Micros() {
+        return latency.getValueAtPercentile(99.9, TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public long getMaxMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(latency.getMax());
+    }
+
+    @Override
+    public double getMeanWaitMicros() {
+        return wait.getMean() / 1000;
+    }
+
+    @Override
+    public long getP99WaitMicros() {
+        return wait.getValueAtPercentile(99, TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public void reset() {
+        latency.reset();
+        wait.reset();
+        errors.reset();
+        bytesWritten.reset();
+        bytesRead.reset();
+        lines.reset();
+        results.reset();
+    }
+
+    @Override
+    public String toString() {
+        return command + ": " + latency + ", errors=" + getErrorCount() + ", results=" + getResults();
+    }
+}
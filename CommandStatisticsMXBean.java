@@ -0,0 +1,39 @@
+package ca.ubc.cs317.dict.net;
+
+/** JMX view of the statistics of one DICT command, registered by DictionaryMetrics.registerMBeans. Times are in
+ * microseconds.
+ */
+public interface CommandStatisticsMXBean {
+
+    long getCount();
+
+    long getErrorCount();
+
+    long getBytesWritten();
+
+    long getBytesRead();
+
+    long getLinesParsed();
+
+    long getResults();
+
+    double getMeanMicros();
+
+    long getP50Micros();
+
+    long getP90Micros();
+
+    long getP99Micros();
+
+    long getP999Micros();
+
+    long getMaxMicros();
+
+    double getMeanWaitMicros();
+
+    long getP99WaitMicros();
+
+    /** Clears every counter and histogram.
+     */
+    void reset();
+}
@@ -0,0 +1,123 @@
+package ca.ubc.cs317.dict.net;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/** Writes DICT commands to a connection. Commands are encoded as UTF-8 into a buffer that is reused for the lifetime of
+ * the connection and terminated with CR LF, as required by RFC 2229 (regardless of the platform line separator).
+ * Several commands can be appended and then sent with a single flush, i.e. a single write to the socket.
+ *
+ * This class is not thread safe; it is used under the lock of its connection.
+ */
+final class CommandWriter {
+
+    private static final int INITIAL_SIZE = 512;
+
+    private final OutputStream out;
+    private byte[] buffer = new byte[INITIAL_SIZE];
+    private int length;
+    private long bytesWritten;
+
+    CommandWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /** Appends a command to the buffer without sending it.
+     *
+     * @param command The command, without line terminator.
+     * @throws IllegalArgumentException If the command contains a line break, which would let its arguments inject
+     * further commands.
+     */
+    void append(String command) {
+        check(command);
+        ensureCapacity(command.length() * 3 + 2);
+        for (int i = 0; i < command.length(); i++) {
+            char c = command.charAt(i);
+            if (c < 0x80) {
+                buffer[length++] = (byte) c;
+            }
+            else if (c < 0x800) {
+                buffer[length++] = (byte) (0xC0 | (c >> 6));
+                buffer[length++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < command.length() && Character.isLowSurrogate(command.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, command.charAt(++i));
+                buffer[length++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[length++] = (byte) (0x80 | (codePoint & 0x3F));
+            }
+            else if (Character.isSurrogate(c)) {
+                //unpaired surrogate, not representable in UTF-8
+                buffer[length++] = '?';
+            }
+            else {
+                buffer[length++] = (byte) (0xE0 | (c >> 12));
+                buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[length++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        buffer[length++] = '\r';
+        buffer[length++] = '\n';
+    }
+
+    /** Checks that a command can be appended. A batch of commands should be checked as a whole before any of them is
+     * appended, so that a bad command can't leave the ones before it in the buffer, to be sent with the next command.
+     *
+     * @param command The command, without line terminator.
+     * @throws IllegalArgumentException If the command contains a line break, which would let its arguments inject
+     * further commands.
+     */
+    static void check(String command) {
+        if (command.indexOf('\r') >= 0 || command.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("DICT commands can't contain line breaks");
+        }
+    }
+
+    /** Sends all appended commands with a single write.
+     *
+     * @throws IOException If the commands could not be written.
+     */
+    void flush() throws IOException {
+        if (length == 0) {
+            return;
+        }
+        try {
+            out.write(buffer, 0, length);
+            out.flush();
+            bytesWritten += length;
+        }
+        finally {
+            length = 0;
+        }
+    }
+
+    /** Appends a command and sends it immediately, together with any command appended before it.
+     *
+     * @param command The command, without line terminator.
+     * @throws IOException If the command could not be written.
+     */
+    void send(String command) throws IOException {
+        append(command);
+        flush();
+    }
+
+    /** @return Number of bytes appended and not sent yet.
+     */
+    int getPendingBytes() {
+        return length;
+    }
+
+    /** @return Number of bytes sent so far.
+     */
+    long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+}
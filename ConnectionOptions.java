@@ -0,0 +1,69 @@
+package ca.ubc.cs317.dict.net;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/** Settings applied when a DictionaryConnection is opened: timeouts and metrics. A connection reads the settings once,
+ * when it is created, so an instance can be changed and reused for later connections, e.g. through
+ * DictionaryConnectionPool.getConnectionOptions.
+ */
+public class ConnectionOptions {
+
+    private volatile int connectTimeoutMillis = (int) TimeUnit.SECONDS.toMillis(10);
+    private volatile int readTimeoutMillis = (int) TimeUnit.SECONDS.toMillis(30);
+    private volatile DictMetrics metrics = DictMetrics.NONE;
+
+    /** Sets how long to wait for the TCP connection to be established and for the banner. Defaults to 10 seconds.
+     *
+     * @param timeout The timeout, 0 to wait forever.
+     * @param unit    Unit of the timeout.
+     * @return This object.
+     */
+    public ConnectionOptions setConnectTimeout(long timeout, TimeUnit unit) {
+        this.connectTimeoutMillis = toMillis(timeout, unit);
+        return this;
+    }
+
+    /** Sets how long a read may block without receiving anything from the server (SO_TIMEOUT). Defaults to 30
+     * seconds. The deadline of a call, if any, can make individual reads shorter.
+     *
+     * @param timeout The timeout, 0 to wait forever.
+     * @param unit    Unit of the timeout.
+     * @return This object.
+     */
+    public ConnectionOptions setReadTimeout(long timeout, TimeUnit unit) {
+        this.readTimeoutMillis = toMillis(timeout, unit);
+        return this;
+    }
+
+    /** Sets the metrics connections report to. Defaults to DictMetrics.NONE.
+     *
+     * @param metrics The metrics.
+     * @return This object.
+     */
+    public ConnectionOptions setMetrics(DictMetrics metrics) {
+        this.metrics = Objects.requireNonNull(metrics);
+        return this;
+    }
+
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public int getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    public DictMetrics getMetrics() {
+        return metrics;
+    }
+
+    private static int toMillis(long timeout, TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout must not be negative");
+        }
+        long millis = unit.toMillis(timeout);
+        //a positive timeout below 1ms must not become 0, which means no timeout
+        return (int) Math.min(Integer.MAX_VALUE, millis == 0 && timeout > 0 ? 1 : millis);
+    }
+}
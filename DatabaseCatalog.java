@@ -0,0 +1,230 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.exception.DictConnectionException;
+import ca.ubc.cs317.dict.model.Database;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Keeps the list of databases supported by a DICT server in an immutable, versioned snapshot. The list is loaded once
+ * and then only replaced when it is refreshed, either on demand or by a background task, so lookups can resolve
+ * database names without going back to the server or taking the connection lock.
+ */
+public class DatabaseCatalog {
+
+    /** Source of the database list, normally a SHOW DB exchange with the server.
+     */
+    public interface Loader {
+        Collection<Database> load() throws DictConnectionException;
+    }
+
+    /** Notified when the content of the catalog changes, i.e. when a new version is published. Data derived from the
+     * previous list of databases (such as cached replies) should be discarded.
+     */
+    public interface Listener {
+        void catalogChanged(Snapshot snapshot);
+    }
+
+    /** Immutable view of the databases known to the catalog at a given point in time.
+     */
+    public static final class Snapshot {
+
+        private final long version;
+        private final long loadedAt;
+        private final Map<String, Database> databases;
+
+        private Snapshot(long version, long loadedAt, Map<String, Database> databases) {
+            this.version = version;
+            this.loadedAt = loadedAt;
+            this.databases = databases;
+        }
+
+        /** @return The version of this snapshot. It starts at 0 (never loaded) and increases every time the content
+         * of the catalog changes.
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /** @return The time (as given by System.currentTimeMillis) at which this snapshot was loaded.
+         */
+        public long getLoadedAt() {
+            return loadedAt;
+        }
+
+        /** @return True if the catalog has never been loaded.
+         */
+        public boolean isEmpty() {
+            return version == 0;
+        }
+
+        /** @param name Name of the database.
+         * @return The Database object with the given name, or null if the server did not list it.
+         */
+        public Database get(String name) {
+            return databases.get(name);
+        }
+
+        /** @return The databases in the order they were returned by the server.
+         */
+        public Collection<Database> getDatabases() {
+            return databases.values();
+        }
+    }
+
+    private static final Snapshot EMPTY = new Snapshot(0, 0, Collections.<String, Database>emptyMap());
+
+    private final Loader loader;
+    private volatile Snapshot snapshot = EMPTY;
+    private ScheduledExecutorService refresher;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong notifiedVersion = new AtomicLong();
+
+    /** Creates an empty catalog. Nothing is loaded until the catalog is first used or refreshed.
+     *
+     * @param loader Source used to (re)load the list of databases.
+     */
+    public DatabaseCatalog(Loader loader) {
+        this.loader = loader;
+    }
+
+    /** Returns the current snapshot without contacting the server. The snapshot may be empty if the catalog was never
+     * loaded.
+     *
+     * @return The current snapshot.
+     */
+    public Snapshot current() {
+        return snapshot;
+    }
+
+    /** Returns the current snapshot, loading it first if the catalog was never loaded.
+     *
+     * @return A loaded snapshot.
+     * @throws DictConnectionException If the list of databases could not be retrieved.
+     */
+    public Snapshot ensureLoaded() throws DictConnectionException {
+        Snapshot current = snapshot;
+        if (current.isEmpty()) {
+            current = refresh();
+        }
+        return current;
+    }
+
+    /** Reloads the list of databases and publishes it as the new snapshot. The version is only increased if the list
+     * actually changed.
+     *
+     * @return The newly published snapshot.
+     * @throws DictConnectionException If the list of databases could not be retrieved.
+     */
+    public Snapshot refresh() throws DictConnectionException {
+        //load outside of any catalog lock, the loader may need the connection lock
+        return update(loader.load());
+    }
+
+    /** Publishes a list of databases that was obtained without going through the loader, e.g. the reply to a SHOW DB
+     * command sent asynchronously. The version is only increased if the list actually changed.
+     *
+     * @param loaded Databases in the order they were returned by the server.
+     * @return The newly published snapshot.
+     */
+    public Snapshot update(Collection<Database> loaded) {
+        Map<String, Database> databases = new LinkedHashMap<>();
+        for (Database database : loaded) {
+            databases.put(database.getName(), database);
+        }
+        Snapshot published = publish(Collections.unmodifiableMap(databases));
+
+        //only the first thread to see a new version notifies the listeners
+        long notified = notifiedVersion.get();
+        if (published.version > notified && notifiedVersion.compareAndSet(notified, published.version)) {
+            for (Listener listener : listeners) {
+                listener.catalogChanged(published);
+            }
+        }
+        return published;
+    }
+
+    /** Registers a listener to be notified every time the content of the catalog changes. Listeners are called on the
+     * thread that refreshed the catalog and should return quickly.
+     *
+     * @param listener The listener.
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /** Removes a listener registered with addListener.
+     *
+     * @param listener The listener.
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /** Looks up a database by name in the current snapshot, without contacting the server.
+     *
+     * @param name Name of the database.
+     * @return The Database object with the given name, or null if it is unknown.
+     */
+    public Database resolve(String name) {
+        return snapshot.get(name);
+    }
+
+    /** Starts refreshing the catalog periodically on a background daemon thread. Failed refreshes are ignored and the
+     * previous snapshot is kept.
+     *
+     * @param period Time between two refreshes.
+     * @param unit   Unit of the period.
+     */
+    public synchronized void startAutoRefresh(long period, TimeUnit unit) {
+        stopAutoRefresh();
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "dict-catalog-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+            }
+            //keep the previous snapshot until the next attempt
+            catch (DictConnectionException | RuntimeException e) {
+                System.err.println("unable to refresh database catalog");
+            }
+        }, period, period, unit);
+    }
+
+    /** Stops the background refresh, if it was started.
+     */
+    public synchronized void stopAutoRefresh() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+    }
+
+    private synchronized Snapshot publish(Map<String, Database> databases) {
+        Snapshot previous = snapshot;
+        long version = sameDatabases(previous.databases, databases) && !previous.isEmpty()
+                ? previous.version : previous.version + 1;
+        snapshot = new Snapshot(version, System.currentTimeMillis(), databases);
+        return snapshot;
+    }
+
+    private static boolean sameDatabases(Map<String, Database> a, Map<String, Database> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (Database database : b.values()) {
+            Database other = a.get(database.getName());
+            if (other == null || !Objects.equals(other.getDescription(), database.getDescription())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,143 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.exception.DictConnectionException;
+
+import java.util.concurrent.TimeUnit;
+
+/** A point in time by which an operation must complete. Deadlines are propagated implicitly: within(deadline, call)
+ * makes the deadline current on the calling thread for the duration of the call, so it applies to every operation
+ * done by the layers below (caching, pooling, retries) without them having to pass it along. A DictionaryConnection
+ * bounds every blocking read by the current deadline, and fails with DictTimeoutException once it has expired.
+ *
+ * <pre>
+ * Collection&lt;Definition&gt; definitions = Deadline.within(Deadline.after(500, TimeUnit.MILLISECONDS),
+ *         () -&gt; client.getDefinitions(word, database));
+ * </pre>
+ */
+public final class Deadline {
+
+    /** Work done under a deadline.
+     */
+    @FunctionalInterface
+    public interface Call<T> {
+        T call() throws DictConnectionException;
+    }
+
+    private static final Deadline NONE = new Deadline(Long.MAX_VALUE);
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    //System.nanoTime at which the deadline expires, Long.MAX_VALUE for none
+    private final long expiresAt;
+
+    private Deadline(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    /** @param timeout Time left before the deadline.
+     * @param unit    Unit of the timeout.
+     * @return A deadline expiring after the given time.
+     */
+    public static Deadline after(long timeout, TimeUnit unit) {
+        long now = System.nanoTime();
+        long nanos = unit.toNanos(timeout);
+        //saturate instead of overflowing for very long timeouts
+        return nanos >= Long.MAX_VALUE - now ? NONE : new Deadline(now + nanos);
+    }
+
+    /** @return A deadline that never expires.
+     */
+    public static Deadline none() {
+        return NONE;
+    }
+
+    /** @return The deadline of the innermost within call on this thread, or none.
+     */
+    public static Deadline current() {
+        Deadline deadline = CURRENT.get();
+        return deadline == null ? NONE : deadline;
+    }
+
+    /** Runs a call with a deadline made current on this thread. If a deadline is already current, the earliest of the
+     * two applies, so an inner layer can shorten the deadline but never extend it.
+     *
+     * @param deadline The deadline.
+     * @param call     The work to do.
+     * @return The value returned by the call.
+     * @throws DictConnectionException If the call failed, or DictTimeoutException if the deadline expired.
+     */
+    public static <T> T within(Deadline deadline, Call<T> call) throws DictConnectionException {
+        Deadline previous = CURRENT.get();
+        Deadline effective = previous == null ? deadline : previous.earliest(deadline);
+        CURRENT.set(effective);
+        try {
+            effective.check();
+            return call.call();
+        }
+        finally {
+            if (previous == null) {
+                CURRENT.remove();
+            }
+            else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /** @return True if this deadline never expires.
+     */
+    public boolean isNone() {
+        return expiresAt == Long.MAX_VALUE;
+    }
+
+    /** @return True if the deadline has passed.
+     */
+    public boolean isExpired() {
+        return !isNone() && System.nanoTime() - expiresAt >= 0;
+    }
+
+    /** @return Nanoseconds left before the deadline, 0 if it has passed, Long.MAX_VALUE if there is none.
+     */
+    public long remainingNanos() {
+        if (isNone()) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, expiresAt - System.nanoTime());
+    }
+
+    /** @return Milliseconds left before the deadline, rounded up so that a deadline that hasn't passed yet never
+     * reads as 0. 0 if it has passed, Long.MAX_VALUE if there is none.
+     */
+    public long remainingMillis() {
+        long nanos = remainingNanos();
+        if (nanos == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        return (nanos + 999_999) / 1_000_000;
+    }
+
+    /** @param other Another deadline.
+     * @return Whichever of the two deadlines expires first.
+     */
+    public Deadline earliest(Deadline other) {
+        if (isNone()) {
+            return other;
+        }
+        if (other.isNone()) {
+            return this;
+        }
+        return other.expiresAt - expiresAt < 0 ? other : this;
+    }
+
+    /** @throws DictTimeoutException If the deadline has passed.
+     */
+    public void check() throws DictTimeoutException {
+        if (isExpired()) {
+            throw new DictTimeoutException("deadline expired");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return isNone() ? "Deadline[none]" : "Deadline[" + remainingMillis() + "ms left]";
+    }
+}
@@ -0,0 +1,43 @@
+package ca.ubc.cs317.dict.net;
+
+/** Service provider interface for DICT client metrics. A connection reports every command it completes with a single
+ * call, so an implementation only pays for what it records. Implementations must be thread safe and fast: they are
+ * called on the request path, under the lock of the connection. DictionaryMetrics is the built-in implementation,
+ * other ones can forward to an existing metrics library.
+ */
+public interface DictMetrics {
+
+    /** The operations that are measured.
+     */
+    enum Command {
+        /** Opening the socket and reading the banner. */
+        CONNECT,
+        DEFINE,
+        MATCH,
+        SHOW_DB,
+        SHOW_STRAT,
+        /** The STATUS command used to check that a connection is still usable. */
+        STATUS
+    }
+
+    /** Metrics that discard everything, used when none are configured.
+     */
+    DictMetrics NONE = (command, waitNanos, totalNanos, bytesWritten, bytesRead, lines, results, failed) -> {
+    };
+
+    /** Records a completed command.
+     *
+     * @param command      The command.
+     * @param waitNanos    Time from sending the command to reading the first line of the reply, i.e. time spent
+     *                     waiting for the server. -1 if not known (e.g. when recorded by a decorator).
+     * @param totalNanos   Time from sending the command to reading the end of the reply. The difference with waitNanos
+     *                     is mostly transfer and parsing time.
+     * @param bytesWritten Number of bytes sent, -1 if not known.
+     * @param bytesRead    Number of bytes received, -1 if not known.
+     * @param lines        Number of reply lines parsed, -1 if not known.
+     * @param results      Number of definitions, matches, databases or strategies returned.
+     * @param failed       True if the command failed, in which case results is 0.
+     */
+    void commandCompleted(Command command, long waitNanos, long totalNanos, long bytesWritten, long bytesRead,
+                          long lines, int results, boolean failed);
+}
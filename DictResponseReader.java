@@ -0,0 +1,289 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.exception.DictConnectionException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** Byte-oriented reader for DICT server replies. Status codes and counts are parsed as ints straight from the receive
+ * buffer, and only payload text (and the atoms that are actually needed) is decoded, as UTF-8 as required by RFC 2229.
+ * Text lines are dot-unstuffed in place. The receive and line buffers are reused across commands, so reading a reply
+ * allocates little more than the strings handed back to the caller.
+ *
+ * This class is not thread safe; it is used under the lock of its connection.
+ */
+final class DictResponseReader {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+
+    //current line, without its CR LF terminator
+    private byte[] line = new byte[256];
+    private int lineLength;
+    //where the atoms (or the text) of the current line start
+    private int start;
+    private byte[] scratch = new byte[256];
+
+    //totals for metrics, and when the first line after markReply was read
+    private long bytesRead;
+    private long linesRead;
+    private boolean awaitingReply;
+    private long replyStartedAt;
+
+    //bounds every blocking read when the stream comes from a socket
+    private Socket socket;
+    private int readTimeoutMillis;
+    private int appliedTimeoutMillis = -1;
+    private Deadline deadline = Deadline.none();
+
+    DictResponseReader(InputStream in) {
+        this.in = in;
+    }
+
+    /** Reads a status line and returns its code. The details can then be retrieved with details, number or atom.
+     *
+     * @return The three-digit status code.
+     * @throws IOException If the line could not be read.
+     * @throws DictConnectionException If the line doesn't start with a status code.
+     */
+    int readStatus() throws IOException, DictConnectionException {
+        readLine();
+        if (lineLength < 3) {
+            throw new DictConnectionException("invalid status line: " + lineText());
+        }
+        int code = 0;
+        for (int i = 0; i < 3; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new DictConnectionException("invalid status line: " + lineText());
+            }
+            code = code * 10 + digit;
+        }
+        start = Math.min(4, lineLength);
+        return code;
+    }
+
+    /** Reads the next line of a text body (definition, or list of matches, databases or strategies).
+     *
+     * @return False if the line is the "." that terminates the body, true otherwise.
+     * @throws IOException If the line could not be read.
+     */
+    boolean readTextLine() throws IOException {
+        readLine();
+        if (lineLength > 0 && line[0] == '.') {
+            if (lineLength == 1) {
+                return false;
+            }
+            //undo dot-stuffing
+            if (line[1] == '.') {
+                start = 1;
+                return true;
+            }
+        }
+        start = 0;
+        return true;
+    }
+
+    /** Reads and discards text lines up to and including the terminating ".".
+     */
+    void skipText() throws IOException {
+        while (readTextLine()) {
+            //discard
+        }
+    }
+
+    /** @return The details of the current status line, or the current text line, decoded as UTF-8.
+     */
+    String text() {
+        return new String(line, start, lineLength - start, StandardCharsets.UTF_8);
+    }
+
+    /** Parses the number at the start of the status details, e.g. the count in "150 3 definitions retrieved", without
+     * decoding the line.
+     *
+     * @return The number.
+     * @throws DictConnectionException If the details don't start with a number.
+     */
+    int number() throws DictConnectionException {
+        int i = start;
+        int value = 0;
+        while (i < lineLength && line[i] >= '0' && line[i] <= '9') {
+            value = value * 10 + (line[i] - '0');
+            i++;
+        }
+        if (i == start) {
+            throw new DictConnectionException("expected a number: " + lineText());
+        }
+        return value;
+    }
+
+    /** Returns one atom of the current line (status details or text line). Atoms are separated by spaces and may be
+     * quoted with single or double quotes, in which case backslash escapes are honoured.
+     *
+     * @param index Index of the atom, starting at 0.
+     * @return The decoded atom, or null if the line has fewer atoms.
+     */
+    String atom(int index) {
+        int i = start;
+        for (int current = 0; ; current++) {
+            while (i < lineLength && (line[i] == ' ' || line[i] == '\t')) {
+                i++;
+            }
+            if (i >= lineLength) {
+                return null;
+            }
+            byte quote = line[i] == '"' || line[i] == '\'' ? line[i] : 0;
+            if (quote == 0) {
+                int from = i;
+                while (i < lineLength && line[i] != ' ' && line[i] != '\t') {
+                    i++;
+                }
+                if (current == index) {
+                    return new String(line, from, i - from, StandardCharsets.UTF_8);
+                }
+            }
+            else {
+                int length = 0;
+                i++;
+                while (i < lineLength && line[i] != quote) {
+                    if (line[i] == '\\' && i + 1 < lineLength) {
+                        i++;
+                    }
+                    if (current == index) {
+                        if (length == scratch.length) {
+                            scratch = Arrays.copyOf(scratch, length * 2);
+                        }
+                        scratch[length++] = line[i];
+                    }
+                    i++;
+                }
+                i++;
+                if (current == index) {
+                    return new String(scratch, 0, length, StandardCharsets.UTF_8);
+                }
+            }
+        }
+    }
+
+    /** Makes every blocking read time out after the read timeout, or earlier if the deadline set with setDeadline
+     * expires first.
+     *
+     * @param socket            The socket the stream comes from.
+     * @param readTimeoutMillis Maximum time a read may block, 0 for no limit.
+     */
+    void setTimeouts(Socket socket, int readTimeoutMillis) {
+        this.socket = socket;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    /** @param deadline Deadline of the current call, Deadline.none() if it has none.
+     */
+    void setDeadline(Deadline deadline) {
+        this.deadline = deadline;
+    }
+
+    /** Records the time at which the next line is read, i.e. the time the server takes to start replying to the
+     * command that was just sent. Only used when metrics are enabled, so the clock isn't read otherwise.
+     */
+    void markReply() {
+        awaitingReply = true;
+        replyStartedAt = 0;
+    }
+
+    /** @return The System.nanoTime at which the first line after markReply was read, 0 if none has been read yet.
+     */
+    long getReplyStartedAt() {
+        return replyStartedAt;
+    }
+
+    /** @return Number of bytes received so far.
+     */
+    long getBytesRead() {
+        return bytesRead;
+    }
+
+    /** @return Number of lines read so far.
+     */
+    long getLinesRead() {
+        return linesRead;
+    }
+
+    /** Reads one line into the line buffer, refilling the receive buffer as needed.
+     */
+    private void readLine() throws IOException {
+        lineLength = 0;
+        while (true) {
+            if (position == limit) {
+                fill();
+            }
+            int end = position;
+            while (end < limit && buffer[end] != '\n') {
+                end++;
+            }
+            append(position, end - position);
+            if (end < limit) {
+                position = end + 1;
+                if (lineLength > 0 && line[lineLength - 1] == '\r') {
+                    lineLength--;
+                }
+                linesRead++;
+                if (awaitingReply) {
+                    awaitingReply = false;
+                    replyStartedAt = System.nanoTime();
+                }
+                return;
+            }
+            position = limit;
+        }
+    }
+
+    private void append(int from, int length) {
+        if (lineLength + length > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+        }
+        System.arraycopy(buffer, from, line, lineLength, length);
+        lineLength += length;
+    }
+
+    private void fill() throws IOException {
+        if (socket != null) {
+            applyTimeout();
+        }
+        int read = in.read(buffer, 0, buffer.length);
+        if (read < 0) {
+            throw new EOFException("connection closed by server");
+        }
+        position = 0;
+        limit = read;
+        bytesRead += read;
+    }
+
+    private void applyTimeout() throws IOException {
+        int timeout = readTimeoutMillis;
+        if (!deadline.isNone()) {
+            long remaining = deadline.remainingMillis();
+            if (remaining == 0) {
+                throw new SocketTimeoutException("deadline expired");
+            }
+            timeout = (int) (timeout == 0 ? Math.min(remaining, Integer.MAX_VALUE) : Math.min(remaining, timeout));
+        }
+        //setSoTimeout is only called when the value changes
+        if (timeout != appliedTimeoutMillis) {
+            socket.setSoTimeout(timeout);
+            appliedTimeoutMillis = timeout;
+        }
+    }
+
+    private String lineText() {
+        return new String(line, 0, lineLength, StandardCharsets.UTF_8);
+    }
+}
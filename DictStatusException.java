@@ -0,0 +1,29 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.exception.DictConnectionException;
+
+/** Thrown when the server answers a command with an unexpected status, e.g. 550 (invalid database), 420 (server
+ * temporarily unavailable) or 421 (server shutting down). Transient statuses (4xx) are worth retrying, permanent ones
+ * (5xx) are not.
+ */
+public class DictStatusException extends DictConnectionException {
+
+    private final int status;
+
+    public DictStatusException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    /** @return The status code sent by the server.
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /** @return True if the status is transient (4xx), i.e. the same command may succeed later or on another server.
+     */
+    public boolean isTransient() {
+        return status >= 400 && status < 500;
+    }
+}
@@ -0,0 +1,18 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.exception.DictConnectionException;
+
+/** Thrown when a DICT operation doesn't complete in time: the connection could not be established within the connect
+ * timeout, the server sent nothing for longer than the read timeout, or the deadline of the call expired. The
+ * connection the operation was using has been closed, since the rest of the reply may still arrive.
+ */
+public class DictTimeoutException extends DictConnectionException {
+
+    public DictTimeoutException(String message) {
+        super(message);
+    }
+
+    public DictTimeoutException(Throwable cause) {
+        super(cause);
+    }
+}
@@ -0,0 +1,320 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.model.Database;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/** A dictionary in dictd format: a sorted .index file, with one "headword TAB offset TAB length" line per entry
+ * (offsets and lengths in dictd's base64), and the entry text in a .dict file or a dictzip-compressed .dict.dz file.
+ * The index is memory-mapped and searched with a binary search directly over its bytes; no index entry is loaded
+ * into memory until it matches.
+ *
+ * Headwords are compared the way dictd sorts them: ASCII case is folded and, unless the database was built with
+ * --allchars, characters other than letters, digits and spaces are ignored.
+ */
+final class DictdDatabase {
+
+    private static final String BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+    private static final int[] BASE64_VALUES = new int[128];
+
+    static {
+        Arrays.fill(BASE64_VALUES, -1);
+        for (int i = 0; i < BASE64.length(); i++) {
+            BASE64_VALUES[BASE64.charAt(i)] = i;
+        }
+    }
+
+    /** An index entry: a headword and the location of its text.
+     */
+    static final class Entry {
+
+        private final String headword;
+        private final long offset;
+        private final int length;
+
+        private Entry(String headword, long offset, int length) {
+            this.headword = headword;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        String getHeadword() {
+            return headword;
+        }
+    }
+
+    private final Database database;
+    private final MappedByteBuffer index;
+    private final int indexSize;
+    private final boolean allChars;
+    private final MappedByteBuffer plainData;
+    private final DictzipReader compressedData;
+
+    /** Opens a dictionary.
+     *
+     * @param name      Name of the database, as used in DEFINE and MATCH.
+     * @param indexFile The .index file.
+     * @param dataFile  The .dict or .dict.dz file.
+     * @throws IOException If the files can't be read.
+     */
+    DictdDatabase(String name, Path indexFile, Path dataFile) throws IOException {
+        index = map(indexFile);
+        indexSize = index.limit();
+        if (dataFile.getFileName().toString().endsWith(".dz")) {
+            compressedData = new DictzipReader(dataFile);
+            plainData = null;
+        }
+        else {
+            plainData = map(dataFile);
+            compressedData = null;
+        }
+
+        //these special entries are found with the default collation, before we know which one applies
+        allChars = !findEntries("00-database-allchars", false, false).isEmpty()
+                || !findEntries("00databaseallchars", false, false).isEmpty();
+        database = new Database(name, readShortDescription(name));
+    }
+
+    Database getDatabase() {
+        return database;
+    }
+
+    /** Finds the entries whose headword equals the word.
+     */
+    List<Entry> exact(String word) {
+        return findEntries(word, false, allChars);
+    }
+
+    /** Finds the entries whose headword starts with the word.
+     */
+    List<Entry> prefix(String word) {
+        return findEntries(word, true, allChars);
+    }
+
+    /** Hands over every entry of the index, in index order, for strategies that can't use the sort order.
+     */
+    void scan(java.util.function.Consumer<Entry> consumer) {
+        int position = 0;
+        while (position < indexSize) {
+            int end = lineEnd(position);
+            Entry entry = parse(position, end);
+            if (entry != null) {
+                consumer.accept(entry);
+            }
+            position = end + 1;
+        }
+    }
+
+    /** Reads the text of an entry.
+     *
+     * @param entry The entry.
+     * @return The definition text, decoded as UTF-8.
+     * @throws IOException If the text could not be read.
+     */
+    String read(Entry entry) throws IOException {
+        byte[] bytes;
+        if (compressedData != null) {
+            bytes = compressedData.read(entry.offset, entry.length);
+        }
+        else {
+            if (entry.offset + entry.length > plainData.limit()) {
+                throw new IOException("entry " + entry.headword + " is past the end of the dictionary");
+            }
+            bytes = new byte[entry.length];
+            plainData.get((int) entry.offset, bytes);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** @return True if the headword is one of the special "00-database-..." entries, which are not real words.
+     */
+    static boolean isSpecial(String headword) {
+        return headword.startsWith("00-database-") || headword.startsWith("00database");
+    }
+
+    private List<Entry> findEntries(String word, boolean prefix, boolean allChars) {
+        byte[] key = collationKey(word, allChars);
+        List<Entry> entries = new ArrayList<>();
+        int position = lowerBound(key, allChars);
+        while (position < indexSize) {
+            int end = lineEnd(position);
+            int comparison = compare(position, key, allChars, prefix);
+            if (comparison != 0) {
+                break;
+            }
+            Entry entry = parse(position, end);
+            if (entry != null) {
+                entries.add(entry);
+            }
+            position = end + 1;
+        }
+        return entries;
+    }
+
+    /** Binary search over the bytes of the index for the first line whose headword is not less than the key.
+     */
+    private int lowerBound(byte[] key, boolean allChars) {
+        int low = 0;
+        int high = indexSize;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int start = lineStart(middle);
+            if (compare(start, key, allChars, false) < 0) {
+                low = lineEnd(start) + 1;
+            }
+            else {
+                high = start;
+            }
+        }
+        return low;
+    }
+
+    /** Compares the headword of the line starting at a position with a collation key.
+     *
+     * @param prefix If true, a headword that starts with the key compares as equal.
+     */
+    private int compare(int position, byte[] key, boolean allChars, boolean prefix) {
+        int k = 0;
+        for (int i = position; i < indexSize; i++) {
+            int b = index.get(i) & 0xff;
+            if (b == '\t' || b == '\n') {
+                break;
+            }
+            if (!allChars && ignored(b)) {
+                continue;
+            }
+            if (k == key.length) {
+                return prefix ? 0 : 1;
+            }
+            int difference = fold(b) - (key[k] & 0xff);
+            if (difference != 0) {
+                return difference;
+            }
+            k++;
+        }
+        return k == key.length ? 0 : -1;
+    }
+
+    private static byte[] collationKey(String word, boolean allChars) {
+        byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+        byte[] key = new byte[bytes.length];
+        int length = 0;
+        for (byte b : bytes) {
+            if (allChars || !ignored(b & 0xff)) {
+                key[length++] = (byte) fold(b & 0xff);
+            }
+        }
+        return Arrays.copyOf(key, length);
+    }
+
+    //dictionary order: only letters, digits, blanks and non-ASCII bytes are significant
+    private static boolean ignored(int b) {
+        return b < 0x80 && b != ' ' && !Character.isLetterOrDigit(b);
+    }
+
+    private static int fold(int b) {
+        return b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b;
+    }
+
+    private int lineStart(int position) {
+        while (position > 0 && index.get(position - 1) != '\n') {
+            position--;
+        }
+        return position;
+    }
+
+    private int lineEnd(int position) {
+        while (position < indexSize && index.get(position) != '\n') {
+            position++;
+        }
+        return position;
+    }
+
+    private Entry parse(int start, int end) {
+        int firstTab = -1;
+        int secondTab = -1;
+        for (int i = start; i < end; i++) {
+            if (index.get(i) == '\t') {
+                if (firstTab < 0) {
+                    firstTab = i;
+                }
+                else {
+                    secondTab = i;
+                    break;
+                }
+            }
+        }
+        if (secondTab < 0) {
+            return null;
+        }
+        int lineEnd = end > secondTab && index.get(end - 1) == '\r' ? end - 1 : end;
+        byte[] headword = new byte[firstTab - start];
+        index.get(start, headword);
+        return new Entry(new String(headword, StandardCharsets.UTF_8), base64(firstTab + 1, secondTab),
+                (int) base64(secondTab + 1, lineEnd));
+    }
+
+    private long base64(int from, int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int b = index.get(i);
+            int digit = b >= 0 && b < 128 ? BASE64_VALUES[b] : -1;
+            if (digit < 0) {
+                break;
+            }
+            value = value * 64 + digit;
+        }
+        return value;
+    }
+
+    private String readShortDescription(String name) {
+        for (Entry entry : findEntries("00-database-short", false, allChars)) {
+            try {
+                //the text repeats the headword on its first line, the description follows
+                String description = null;
+                for (String line : read(entry).split("\n")) {
+                    String trimmed = line.trim();
+                    if (!trimmed.isEmpty() && !isSpecial(trimmed)) {
+                        description = trimmed;
+                        break;
+                    }
+                }
+                if (description != null) {
+                    return description;
+                }
+            }
+            //fall back to the name
+            catch (IOException e) {
+                System.err.println("unable to read description of " + name);
+            }
+        }
+        return name;
+    }
+
+    /** Maps a whole file read-only. A MappedByteBuffer is indexed by int, so files over 2 GB are rejected.
+     */
+    static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to be mapped");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /** Finds the data file matching an index file: name.dict.dz if it exists, otherwise name.dict.
+     */
+    static Path dataFileFor(Path indexFile) {
+        String base = indexFile.getFileName().toString();
+        base = base.substring(0, base.length() - ".index".length());
+        Path compressed = indexFile.resolveSibling(base + ".dict.dz");
+        return Files.exists(compressed) ? compressed : indexFile.resolveSibling(base + ".dict");
+    }
+}
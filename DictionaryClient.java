@@ -0,0 +1,115 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.exception.DictConnectionException;
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+
+import java.util.Collection;
+import java.util.Set;
+
+/** The operations of a DICT client, independently of where the answers come from: a server connection
+ * (DictionaryConnection), a pool of connections (PooledDictionaryClient) or local files (LocalDictionary). Caching,
+ * coalescing and the other layers are decorators that wrap another client, so they can be stacked in any order and
+ * only the layers that are actually used cost anything:
+ *
+ * <pre>
+ * DictionaryClient client = DictionaryClient.decorate(new DictionaryConnection(host),
+ *         CoalescingDictionaryClient::new,
+ *         c -&gt; new CachingDictionaryClient(c, 10000, 10, TimeUnit.MINUTES));
+ * </pre>
+ */
+public interface DictionaryClient {
+
+    /** Wraps a client into another one, e.g. CoalescingDictionaryClient::new.
+     */
+    @FunctionalInterface
+    interface Decorator {
+        DictionaryClient decorate(DictionaryClient client);
+    }
+
+    /** Retrieves all definitions for a specific word.
+     *
+     * @param word The word whose definition is to be retrieved.
+     * @param database The database to be used to retrieve the definition. A special database may be specified,
+     *                 indicating either that all regular databases should be used (database name '*'), or that only
+     *                 definitions in the first database that has a definition for the word should be used
+     *                 (database '!').
+     * @return A collection of Definition objects.
+     * @throws DictConnectionException If the definitions could not be retrieved.
+     */
+    Collection<Definition> getDefinitions(String word, Database database) throws DictConnectionException;
+
+    /** Retrieves a list of matches for a specific word pattern.
+     *
+     * @param word     The word pattern to be matched.
+     * @param strategy The strategy to be used to retrieve the list of matches (e.g., prefix, exact).
+     * @param database The database to be used to retrieve the matches ('*' and '!' are allowed).
+     * @return A set of word matches.
+     * @throws DictConnectionException If the matches could not be retrieved.
+     */
+    Set<String> getMatchList(String word, MatchingStrategy strategy, Database database) throws DictConnectionException;
+
+    /** @return A collection of the Database objects available.
+     * @throws DictConnectionException If the list of databases could not be retrieved.
+     */
+    Collection<Database> getDatabaseList() throws DictConnectionException;
+
+    /** @return A set of the MatchingStrategy objects supported.
+     * @throws DictConnectionException If the list of strategies could not be retrieved.
+     */
+    Set<MatchingStrategy> getStrategyList() throws DictConnectionException;
+
+    /** Variant of getDefinitions that must complete before a deadline. The deadline applies to every layer below,
+     * see Deadline.within.
+     *
+     * @param word     The word whose definition is to be retrieved.
+     * @param database The database to be used to retrieve the definition ('*' and '!' are allowed).
+     * @param deadline The deadline of the call.
+     * @return A collection of Definition objects.
+     * @throws DictConnectionException If the definitions could not be retrieved, or DictTimeoutException if the
+     * deadline expired.
+     */
+    default Collection<Definition> getDefinitions(String word, Database database, Deadline deadline) throws DictConnectionException {
+        return Deadline.within(deadline, () -> getDefinitions(word, database));
+    }
+
+    /** Variant of getMatchList that must complete before a deadline, see getDefinitions(String, Database, Deadline).
+     *
+     * @param word     The word pattern to be matched.
+     * @param strategy The strategy to be used to retrieve the list of matches (e.g., prefix, exact).
+     * @param database The database to be used to retrieve the matches ('*' and '!' are allowed).
+     * @param deadline The deadline of the call.
+     * @return A set of word matches.
+     * @throws DictConnectionException If the matches could not be retrieved, or DictTimeoutException if the deadline
+     * expired.
+     */
+    default Set<String> getMatchList(String word, MatchingStrategy strategy, Database database, Deadline deadline) throws DictConnectionException {
+        return Deadline.within(deadline, () -> getMatchList(word, strategy, database));
+    }
+
+    /** Returns the catalog used to resolve database names. Decorators return the catalog of the client they wrap, so
+     * listeners such as NegativeResultCache can be attached at any layer.
+     *
+     * @return The database catalog.
+     */
+    DatabaseCatalog getCatalog();
+
+    /** Releases the resources of the client (connections, sockets), along with those of any client it wraps.
+     */
+    void close();
+
+    /** Stacks decorators on a client. The first decorator wraps the client itself, the last one is the outermost layer
+     * and is returned.
+     *
+     * @param client     The innermost client, e.g. a DictionaryConnection.
+     * @param decorators The layers to add, innermost first.
+     * @return The outermost client.
+     */
+    static DictionaryClient decorate(DictionaryClient client, Decorator... decorators) {
+        for (Decorator decorator : decorators) {
+            client = decorator.decorate(client);
+        }
+        return client;
+    }
+}
@@ -4,24 +4,38 @@ import ca.ubc.cs317.dict.exception.DictConnectionException;
 import ca.ubc.cs317.dict.model.Database;
 import ca.ubc.cs317.dict.model.Definition;
 import ca.ubc.cs317.dict.model.MatchingStrategy;
-import ca.ubc.cs317.dict.util.DictStringParser;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
-public class DictionaryConnection {
+public class DictionaryConnection implements DictionaryClient {
 
     private static final int DEFAULT_PORT = 2628;
 
+    private final String host;
+    private final int port;
+
     private Socket socket;
-    private BufferedReader input;
-    private PrintWriter output;
+    private DictResponseReader input;
+    private CommandWriter output;
+    private boolean replyPending;
+
+    private final DatabaseCatalog catalog = new DatabaseCatalog(this::readDatabaseList);
+    private volatile Executor asyncExecutor = AsyncExecutors.defaultExecutor();
 
-    private Map<String, Database> databaseMap = new LinkedHashMap<String, Database>();
+    private final DictMetrics metrics;
+    //counters at the start of the command being measured, guarded by the connection lock
+    private long commandStartedAt;
+    private long commandBytesWritten;
+    private long commandBytesRead;
+    private long commandLines;
 
 
     /** Establishes a new connection with a DICT server using an explicit host and port number, and handles initial
@@ -33,20 +47,78 @@ public class DictionaryConnection {
      * don't match their expected value.
      */
     public DictionaryConnection(String host, int port) throws DictConnectionException {
+        this(host, port, DictMetrics.NONE);
+    }
+
+    /** Establishes a new connection with a DICT server and reports the connection and every command to metrics.
+     *
+     * @param host    Name of the host where the DICT server is running
+     * @param port    Port number used by the DICT server
+     * @param metrics Receives the time, size and outcome of the connection and of each command.
+     * @throws DictConnectionException If the host does not exist, the connection can't be established, or the messages
+     * don't match their expected value.
+     */
+    public DictionaryConnection(String host, int port, DictMetrics metrics) throws DictConnectionException {
+        this(host, port, new ConnectionOptions().setMetrics(metrics));
+    }
+
+    /** Establishes a new connection with a DICT server with explicit timeouts and metrics. The connection is
+     * established and the banner read within the connect timeout, or sooner if the deadline of the current call
+     * (Deadline.current) expires first; after that, every read is bounded by the read timeout and by the deadline of
+     * the call (see Deadline.within).
+     *
+     * @param host    Name of the host where the DICT server is running
+     * @param port    Port number used by the DICT server
+     * @param options Timeouts and metrics, read once by this constructor.
+     * @throws DictConnectionException If the host does not exist, the connection can't be established, or the messages
+     * don't match their expected value. DictTimeoutException if the connect timeout or the deadline expired.
+     */
+    public DictionaryConnection(String host, int port, ConnectionOptions options) throws DictConnectionException {
         //define welcome code
         int welcomeCode = 220;
+        this.host = host;
+        this.port = port;
+        this.metrics = options.getMetrics();
 
+        long start = metrics == DictMetrics.NONE ? 0 : System.nanoTime();
+        Deadline deadline = Deadline.current();
+        boolean connected = false;
         try {
+            deadline.check();
+
             //create new socket and get input from server
-            socket = new Socket(host, port);
-            input = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            socket = new Socket();
+            socket.connect(new InetSocketAddress(host, port), connectTimeout(options.getConnectTimeoutMillis(), deadline));
+            socket.setTcpNoDelay(true);
+            input = new DictResponseReader(socket.getInputStream());
+            output = new CommandWriter(socket.getOutputStream());
+            if (metrics != DictMetrics.NONE) {
+                input.markReply();
+            }
 
-            //get status using Status class provided and make sure code is for welcome
+            //get status and make sure code is for welcome, the banner is part of connecting
+            input.setTimeouts(socket, options.getConnectTimeoutMillis());
+            input.setDeadline(deadline);
             checkStatus(welcomeCode);
+            input.setTimeouts(socket, options.getReadTimeoutMillis());
+            input.setDeadline(Deadline.none());
+            connected = true;
         }
         //handle I/O error
         catch (IOException e) {
-            System.err.println("Could not get I/O for connection to host " + host);
+            throw poison(e);
+        }
+        finally {
+            if (!connected) {
+                closeQuietly();
+            }
+            if (metrics != DictMetrics.NONE) {
+                long end = System.nanoTime();
+                long bannerAt = input == null ? 0 : input.getReplyStartedAt();
+                metrics.commandCompleted(DictMetrics.Command.CONNECT, bannerAt == 0 ? -1 : bannerAt - start,
+                        end - start, 0, input == null ? 0 : input.getBytesRead(),
+                        input == null ? 0 : input.getLinesRead(), connected ? 1 : 0, !connected);
+            }
         }
     }
 
@@ -65,22 +137,91 @@ public class DictionaryConnection {
      * may happen while sending the message, receiving its reply, or closing the connection.
      *
      */
+    @Override
     public synchronized void close() {
+        catalog.stopAutoRefresh();
+        if (isClosed()) {
+            return;
+        }
         try {
             //send quit command to server
-            output = new PrintWriter(socket.getOutputStream(), true);
-            output.println("QUIT");
+            output.send("QUIT");
 
             //receive final response and close socket
-            String closeMessage = input.readLine();
+            input.readStatus();
+            socket.close();
+        }
+        //exceptions(ignored), the socket must still be closed
+        catch (IOException | DictConnectionException e) {
+            System.err.println("exception ignored");
+            closeQuietly();
+        }
+    }
+
+    private void closeQuietly() {
+        if (socket == null) {
+            return;
+        }
+        try {
             socket.close();
         }
-        //exceptions(ignored)
         catch (IOException e) {
             System.err.println("exception ignored");
         }
     }
 
+    /** @return Name of the host this connection was opened to.
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /** @return Port number this connection was opened to.
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /** @return True if the socket was never opened or has been closed.
+     */
+    public synchronized boolean isClosed() {
+        return socket == null || socket.isClosed();
+    }
+
+    /** Sends a STATUS command and checks that the server answers with 210. Used to make sure an idle connection is
+     * still usable before handing it out again. The probe is bounded by the deadline of the current call, if any.
+     *
+     * @return True if the server answered the probe, false if the connection is closed or broken.
+     */
+    public synchronized boolean isAlive() {
+        //define status codes
+        int statusCode = 210;
+
+        if (isClosed()) {
+            return false;
+        }
+        startCommand();
+        boolean alive = false;
+        try {
+            input.setDeadline(Deadline.current());
+            send("STATUS");
+            checkStatus(statusCode);
+            alive = true;
+            return true;
+        }
+        catch (IOException e) {
+            poison(e);
+            return false;
+        }
+        catch (DictConnectionException e) {
+            abandonReply();
+            return false;
+        }
+        finally {
+            endCommand(DictMetrics.Command.STATUS, alive ? 0 : -1);
+        }
+    }
+
     /** Requests and retrieves all definitions for a specific word.
      *
      * @param word The word whose definition is to be retrieved.
@@ -91,64 +232,50 @@ public class DictionaryConnection {
      * @return A collection of Definition objects containing all definitions returned by the server.
      * @throws DictConnectionException If the connection was interrupted or the messages don't match their expected value.
      */
+    @Override
     public synchronized Collection<Definition> getDefinitions(String word, Database database) throws DictConnectionException {
         Collection<Definition> set = new ArrayList<>();
-        getDatabaseList(); // Ensure the list of databases has been populated
+        getDefinitions(word, database, set::add);
+        return set;
+    }
 
-        //define status codes
-        int retrieveCode = 150;
-        int doneCode = 250;
-        int defineCode = 151;
-        int noDefineFoundCode = 552;
+    /** Requests all definitions for a specific word and hands each one over to a consumer as soon as its terminating
+     * "." line is read, instead of collecting the whole reply first. Only one definition is held in memory at a time.
+     * If the consumer throws an exception, the rest of the reply is read and discarded so the connection stays usable,
+     * and the exception is then rethrown.
+     *
+     * @param word     The word whose definition is to be retrieved.
+     * @param database The database to be used to retrieve the definition. A special database may be specified,
+     *                 indicating either that all regular databases should be used (database name '*'), or that only
+     *                 definitions in the first database that has a definition for the word should be used
+     *                 (database '!').
+     * @param consumer Receives the definitions in the order they are returned by the server.
+     * @return The number of definitions returned by the server.
+     * @throws DictConnectionException If the connection was interrupted or the messages don't match their expected value.
+     */
+    public synchronized int getDefinitions(String word, Database database, Consumer<? super Definition> consumer) throws DictConnectionException {
+        DatabaseCatalog.Snapshot databases = catalog.ensureLoaded(); // Only goes to the server the first time
 
+        beginCall();
+        startCommand();
+        int count = -1;
         try {
-            //create output stream and send user data to server
-            output = new PrintWriter(socket.getOutputStream(), true);
-
-            //handle two word words
-            if (word.contains(" ") && !(word.startsWith("\"")) && !(word.endsWith("\""))){
-                String quotedWord = ("\"" + word + "\"");
-                output.println("DEFINE " + database.getName() + " " + quotedWord);
-            }
-            else {
-                output.println("DEFINE " + database.getName() + " " + word);
-            }
-
-            //get status, handle base case if no definition is found
-            Status status = Status.readStatus(input);
-            if (status.getStatusCode() == noDefineFoundCode) {
-                return set;
-            }
+            //send user data to server
+            send(defineCommand(word, database));
 
-            //if correct, handle number of definitions retrieved:
-            if (status.getStatusCode() == retrieveCode) {
-                String statusString = status.getDetails();
-                int numDef = Integer.parseInt(statusString.substring(0, statusString.indexOf(" ")));
-
-                for (int i = 0; i < numDef;){
-                    //make sure it is returning the 151 definition line, then parse the status data
-                    Status defstatus = checkStatus(defineCode);
-                    String[] oneFiveOneDetails = DictStringParser.splitAtoms(defstatus.getDetails());
-
-                    //create a new definition object and fill it out
-                    String databaseName = oneFiveOneDetails[1];
-                    Definition define = new Definition(word, databaseMap.get(databaseName));
-                    String line = input.readLine();
-                    while (!(line.startsWith("."))){
-                        define.appendDefinition(line);
-                        line = input.readLine();
-                    }
-                    set.add(define);
-                    i++;
-                }
-            }
-            //check for 250 status at the end of stream
-            checkStatus(doneCode);
+            count = readDefinitions(word, databases, consumer);
+            return count;
         }
         catch (IOException e) {
-            System.err.println("unable to get I/O for output stream");
+            throw poison(e);
+        }
+        catch (DictConnectionException | RuntimeException e) {
+            abandonReply();
+            throw e;
+        }
+        finally {
+            endCommand(DictMetrics.Command.DEFINE, count);
         }
-        return set;
     }
 
     /** Requests and retrieves a list of matches for a specific word pattern.
@@ -161,100 +288,394 @@ public class DictionaryConnection {
      * @return A set of word matches returned by the server.
      * @throws DictConnectionException If the connection was interrupted or the messages don't match their expected value.
      */
+    @Override
     public synchronized Set<String> getMatchList(String word, MatchingStrategy strategy, Database database) throws DictConnectionException {
-        Set<String> set = new LinkedHashSet<>();
+        beginCall();
+        startCommand();
+        Set<String> matches = null;
+        try {
+            //send user data to server
+            send(matchCommand(word, strategy, database));
 
-        //define server codes
-        int matchCode = 152;
-        int doneCode = 250;
-        int noMatchCode = 552;
+            matches = readMatches();
+            return matches;
+        }
+        catch (IOException e) {
+            throw poison(e);
+        }
+        catch (DictConnectionException | RuntimeException e) {
+            abandonReply();
+            throw e;
+        }
+        finally {
+            endCommand(DictMetrics.Command.MATCH, matches == null ? -1 : matches.size());
+        }
+    }
 
+    /** Requests a list of matches for a specific word pattern, keeping the database each match comes from. With the
+     * special database '*', a single call returns the matches of every database, attributed to their database.
+     *
+     * @param word     The word pattern to be matched.
+     * @param strategy The strategy to be used to retrieve the list of matches (e.g., prefix, exact).
+     * @param database The database to be used to retrieve the matches ('*' and '!' are allowed).
+     * @return The (database, word) pairs returned by the server, empty if there are none.
+     * @throws DictConnectionException If the connection was interrupted or the messages don't match their expected value.
+     */
+    public synchronized MatchResult getMatches(String word, MatchingStrategy strategy, Database database) throws DictConnectionException {
+        MatchResult.Builder result = new MatchResult.Builder();
+        beginCall();
+        startCommand();
+        int count = -1;
         try {
-            //create output stream and send user data to server
-            output = new PrintWriter(socket.getOutputStream(), true);
+            //send user data to server
+            send(matchCommand(word, strategy, database));
 
-            //handle two word words
-            if (word.contains(" ") && !(word.startsWith("\"")) && !(word.endsWith("\""))){
-                String quotedWord = ("\"" + word + "\"");
-                output.println("MATCH " + database.getName() + " " + strategy.getName() + " " + quotedWord);
+            count = readMatches(result);
+        }
+        catch (IOException e) {
+            throw poison(e);
+        }
+        catch (DictConnectionException | RuntimeException e) {
+            abandonReply();
+            throw e;
+        }
+        finally {
+            endCommand(DictMetrics.Command.MATCH, count);
+        }
+
+        return result.build();
+    }
+
+    /** Creates a command pipeline on this connection. Commands added to the pipeline are written back-to-back when it
+     * is executed, and their replies are matched to the pending futures in FIFO order, so N lookups cost about one
+     * round trip instead of N.
+     *
+     * @return A new, empty pipeline bound to this connection.
+     */
+    public CommandPipeline pipeline() {
+        return new CommandPipeline(this);
+    }
+
+    /** Writes the commands of a pipeline and reads their replies in order. At most depth commands are outstanding at
+     * any time, so neither side can fill its socket buffers while the other is blocked writing. A command answered with
+     * a single error status line (e.g. 550 invalid database) fails on its own and the next replies are still read, as
+     * with the NIO ReplyDecoder. If a reply can't be read to its end, the stream can no longer be trusted: the
+     * connection is closed and every remaining command fails with the same exception.
+     *
+     * @param commands Commands to execute, in order
+     * @param depth    Maximum number of commands written before their replies are read
+     * @throws DictConnectionException If the connection was interrupted or the messages don't match their expected value.
+     */
+    synchronized void execute(List<CommandPipeline.Command<?>> commands, int depth) throws DictConnectionException {
+        if (commands.isEmpty()) {
+            return;
+        }
+        DatabaseCatalog.Snapshot databases = catalog.ensureLoaded(); // Must not be loaded in the middle of the pipeline
+        beginCall();
+
+        //when each command was sent and how many bytes it took, for the metrics
+        boolean measured = metrics != DictMetrics.NONE;
+        long[] sentAt = measured ? new long[commands.size()] : null;
+        int[] sizes = measured ? new int[commands.size()] : null;
+        int reported = 0;
+
+        int sent = 0;
+        int received = 0;
+        try {
+            //reject the batch before anything is buffered
+            for (CommandPipeline.Command<?> command : commands) {
+                CommandWriter.check(command.command());
+            }
+
+            //commands in the window are flushed together, in a single write
+            while (received < commands.size()) {
+                if (sent < commands.size() && sent - received < depth) {
+                    int first = sent;
+                    while (sent < commands.size() && sent - received < depth) {
+                        int pending = output.getPendingBytes();
+                        output.append(commands.get(sent).command());
+                        if (measured) {
+                            sizes[sent] = output.getPendingBytes() - pending;
+                        }
+                        sent++;
+                    }
+                    if (measured) {
+                        Arrays.fill(sentAt, first, sent, System.nanoTime());
+                    }
+                    output.flush();
+                }
+                CommandPipeline.Command<?> command = commands.get(received);
+                replyPending = true;
+                startReply();
+                int results = -1;
+                try {
+                    results = command.complete(this, databases);
+                }
+                catch (DictConnectionException | RuntimeException e) {
+                    if (replyPending) {
+                        throw e;
+                    }
+                    //the whole reply was read, only this command failed
+                    command.fail(e);
+                }
+                finally {
+                    if (measured) {
+                        endCommand(command.type(), sentAt[received], sizes[received], results);
+                        reported++;
+                    }
+                }
+                received++;
+            }
+        }
+        catch (IOException | DictConnectionException | RuntimeException e) {
+            DictConnectionException failure;
+            if (e instanceof IOException) {
+                failure = poison((IOException) e);
             }
             else {
-                output.println("MATCH " + database.getName() + " " + strategy.getName() + " " + word);
+                abandonReply();
+                failure = e instanceof DictConnectionException ? (DictConnectionException) e : new DictConnectionException(e);
+            }
+            //the commands after the one being read never got a reply
+            for (int i = received; i < commands.size(); i++) {
+                if (measured && i >= reported) {
+                    metrics.commandCompleted(commands.get(i).type(), -1, i < sent ? System.nanoTime() - sentAt[i] : 0,
+                            i < sent ? sizes[i] : 0, 0, 0, 0, true);
+                }
+                commands.get(i).fail(failure);
             }
+            throw failure;
+        }
+    }
+
+    /** Reads the reply to a DEFINE command.
+     *
+     * @param word      The word that was sent in the DEFINE command.
+     * @param databases Catalog snapshot used to resolve the database of each definition.
+     * @return A collection of Definition objects containing all definitions returned by the server.
+     * @throws IOException If the reply could not be read.
+     * @throws DictConnectionException If the messages don't match their expected value.
+     */
+    Collection<Definition> readDefinitions(String word, DatabaseCatalog.Snapshot databases) throws IOException, DictConnectionException {
+        Collection<Definition> set = new ArrayList<>();
+        readDefinitions(word, databases, set::add);
+        return set;
+    }
+
+    /** Reads the reply to a DEFINE command, handing each definition over to a consumer as soon as it is complete.
+     *
+     * @param word      The word that was sent in the DEFINE command.
+     * @param databases Catalog snapshot used to resolve the database of each definition.
+     * @param consumer  Receives the definitions in the order they are returned by the server.
+     * @return The number of definitions returned by the server.
+     * @throws IOException If the reply could not be read.
+     * @throws DictConnectionException If the messages don't match their expected value.
+     */
+    int readDefinitions(String word, DatabaseCatalog.Snapshot databases, Consumer<? super Definition> consumer) throws IOException, DictConnectionException {
+        RuntimeException consumerFailure = null;
 
-            //check status and returns empty set if no match
-            Status matchStatus = Status.readStatus(input);
-            if (matchStatus.getStatusCode() == noMatchCode) {
-                return set;
+        //define status codes
+        int retrieveCode = 150;
+        int doneCode = 250;
+        int defineCode = 151;
+        int noDefineFoundCode = 552;
+
+        //get status, handle base case if no definition is found
+        int status = readStatus();
+        if (status == noDefineFoundCode) {
+            return 0;
+        }
+
+        //any other error is a single line, reading further would block or consume the next reply
+        if (status != retrieveCode) {
+            throw new DictStatusException(status, "unexpected reply to DEFINE: " + status + " " + input.text());
+        }
+
+        //handle number of definitions retrieved:
+        int numDef = input.number();
+
+        for (int i = 0; i < numDef;){
+            //make sure it is returning the 151 definition line, then parse the status data
+            checkStatus(defineCode);
+            String databaseName = input.atom(1);
+            Database database = databases.get(databaseName);
+            if (database == null) {
+                //database added after the catalog was loaded, only decode its description in that case
+                database = new Database(databaseName, input.atom(2));
             }
 
-            //if it is the correct match, we continue and get the number of matches
-            if (matchStatus.getStatusCode() == matchCode) {
-                String[] matchList = DictStringParser.splitAtoms(matchStatus.getDetails());
-                int numMatch = Integer.parseInt(matchList[0]);
-
-                //get matches and add to the linked hash set
-                for (int i = 0; i < numMatch;) {
-                    String[] lineList = DictStringParser.splitAtoms(input.readLine());
-                    String match = lineList[1];
-                    set.add(match);
-                    i++;
-                }
+            //create a new definition object and fill it out, the reader stops at the "." line
+            Definition define = new Definition(word, database);
+            while (input.readTextLine()) {
+                define.appendDefinition(input.text());
+            }
+            i++;
 
-                //skip(read) . and ensure last line is 250
-                input.readLine();
-                checkStatus(doneCode);
+            //keep reading after a consumer failure, the rest of the reply must still be consumed
+            if (consumerFailure == null) {
+                try {
+                    consumer.accept(define);
+                }
+                catch (RuntimeException e) {
+                    consumerFailure = e;
+                }
             }
         }
-        catch (IOException e) {
-            System.out.println("Could not find I/O");
+
+        //check for 250 status at the end of stream
+        checkStatus(doneCode);
+        if (consumerFailure != null) {
+            throw consumerFailure;
         }
+        return numDef;
+    }
 
+    /** Reads the reply to a MATCH command.
+     *
+     * @return A set of word matches returned by the server.
+     * @throws IOException If the reply could not be read.
+     * @throws DictConnectionException If the messages don't match their expected value.
+     */
+    Set<String> readMatches() throws IOException, DictConnectionException {
+        Set<String> set = new LinkedHashSet<>();
+        readMatches((databaseName, match) -> set.add(match));
         return set;
     }
 
+    /** Reads the reply to a MATCH command, keeping the database each match comes from.
+     *
+     * @param consumer Receives the database name and the word of each match, in the order returned by the server.
+     * @return The number of matches returned by the server.
+     * @throws IOException If the reply could not be read.
+     * @throws DictConnectionException If the messages don't match their expected value.
+     */
+    int readMatches(BiConsumer<String, String> consumer) throws IOException, DictConnectionException {
+        //define server codes
+        int matchCode = 152;
+        int doneCode = 250;
+        int noMatchCode = 552;
+
+        //check status and returns empty set if no match
+        int matchStatus = readStatus();
+        if (matchStatus == noMatchCode) {
+            return 0;
+        }
+
+        //if it is the correct match, we continue and get the number of matches
+        if (matchStatus == matchCode) {
+            int numMatch = input.number();
+
+            //get matches and hand them over with their database
+            for (int i = 0; i < numMatch;) {
+                input.readTextLine();
+                String databaseName = input.atom(0);
+                String match = input.atom(1);
+                consumer.accept(databaseName, match);
+                i++;
+            }
+
+            //skip(read) . and ensure last line is 250
+            input.skipText();
+            checkStatus(doneCode);
+            return numMatch;
+        }
+
+        //any other error is a single line, like for DEFINE
+        throw new DictStatusException(matchStatus, "unexpected reply to MATCH: " + matchStatus + " " + input.text());
+    }
+
+    /** Builds a DEFINE command, quoting the word if it contains spaces.
+     */
+    static String defineCommand(String word, Database database) {
+        return "DEFINE " + database.getName() + " " + quoteWord(word);
+    }
+
+    /** Builds a MATCH command, quoting the word if it contains spaces.
+     */
+    static String matchCommand(String word, MatchingStrategy strategy, Database database) {
+        return "MATCH " + database.getName() + " " + strategy.getName() + " " + quoteWord(word);
+    }
+
+    //handle two word words
+    private static String quoteWord(String word) {
+        if (word.contains(" ") && !(word.startsWith("\"")) && !(word.endsWith("\""))){
+            return "\"" + word + "\"";
+        }
+        return word;
+    }
+
     /** Requests and retrieves a list of all valid databases used in the server. In addition to returning the list, this
-     * method also updates the local databaseMap field, which contains a mapping from database name to Database object,
-     * to be used by other methods (e.g., getDefinitionMap) to return a Database object based on the name.
+     * method also refreshes the database catalog, which contains a mapping from database name to Database object,
+     * to be used by other methods (e.g., getDefinitions) to return a Database object based on the name.
      *
      * @return A collection of Database objects supported by the server.
      * @throws DictConnectionException If the connection was interrupted or the messages don't match their expected value.
      */
+    @Override
     public synchronized Collection<Database> getDatabaseList() throws DictConnectionException {
+        return catalog.refresh().getDatabases();
+    }
+
+    /** Returns the database catalog of this connection. The catalog is loaded the first time it is needed and can be
+     * refreshed explicitly (getDatabaseList) or periodically (DatabaseCatalog.startAutoRefresh).
+     *
+     * @return The database catalog used to resolve database names returned by the server.
+     */
+    @Override
+    public DatabaseCatalog getCatalog() {
+        return catalog;
+    }
+
+    /** Sends SHOW DB and reads the list of databases. Used as the loader of the database catalog.
+     *
+     * @return A new list with the Database objects supported by the server.
+     * @throws DictConnectionException If the connection was interrupted or the messages don't match their expected value.
+     */
+    private synchronized Collection<Database> readDatabaseList() throws DictConnectionException {
+        Collection<Database> list = new ArrayList<>();
         //define status codes
         int databaseCode = 110;
         int doneCode = 250;
 
+        beginCall();
+        startCommand();
+        boolean done = false;
         try {
-            //create output stream and send user data to server
-            output = new PrintWriter(socket.getOutputStream(), true);
-            output.println("SHOW DB");
+            //send user data to server
+            send("SHOW DB");
 
             //ensure status is correct and get number of DBs
-            Status dbStatus = checkStatus(databaseCode);
-            String[] dbStatusList = DictStringParser.splitAtoms(dbStatus.getDetails());
-            int numDB = Integer.parseInt(dbStatusList[0]);
+            checkStatus(databaseCode);
+            int numDB = input.number();
 
-            //get DBs and add to databaseMap
+            //get DBs and add to the list
             for (int i = 0; i < numDB;) {
-                String[] lineList = DictStringParser.splitAtoms(input.readLine());
-                String dbName = lineList[0];
-                String dbDesc = lineList[1];
+                input.readTextLine();
+                String dbName = input.atom(0);
+                String dbDesc = input.atom(1);
 
                 Database database = new Database(dbName, dbDesc);
-                databaseMap.put(dbName, database);
+                list.add(database);
                 i++;
             }
 
             //skip(read) . and ensure last line is 250
-            input.readLine();
+            input.skipText();
             checkStatus(doneCode);
+            done = true;
         }
         catch (IOException e) {
-            System.out.println("Could not find I/O");
+            throw poison(e);
+        }
+        catch (DictConnectionException | RuntimeException e) {
+            abandonReply();
+            throw e;
+        }
+        finally {
+            endCommand(DictMetrics.Command.SHOW_DB, done ? list.size() : -1);
         }
 
-        return databaseMap.values();
+        return list;
     }
 
     /** Requests and retrieves a list of all valid matching strategies supported by the server.
@@ -262,27 +683,29 @@ public class DictionaryConnection {
      * @return A set of MatchingStrategy objects supported by the server.
      * @throws DictConnectionException If the connection was interrupted or the messages don't match their expected value.
      */
+    @Override
     public synchronized Set<MatchingStrategy> getStrategyList() throws DictConnectionException {
         Set<MatchingStrategy> set = new LinkedHashSet<>();
         //define status codes
         int stratCode = 111;
         int doneCode = 250;
 
+        beginCall();
+        startCommand();
+        boolean done = false;
         try {
-            //create output stream and send user data to server
-            output = new PrintWriter(socket.getOutputStream(), true);
-            output.println("SHOW STRAT");
+            //send user data to server
+            send("SHOW STRAT");
 
             //ensure status is correct and get number of strategies
-            Status stratStatus = checkStatus(stratCode);
-            String[] stratList = DictStringParser.splitAtoms(stratStatus.getDetails());
-            int numStrat = Integer.parseInt(stratList[0]);
+            checkStatus(stratCode);
+            int numStrat = input.number();
 
             //get strategies and add to MatchingStrategy set
             for (int i = 0; i < numStrat;) {
-                String[] lineList = DictStringParser.splitAtoms(input.readLine());
-                String stratName = lineList[0];
-                String stratDesc = lineList[1];
+                input.readTextLine();
+                String stratName = input.atom(0);
+                String stratDesc = input.atom(1);
 
                 MatchingStrategy strategy = new MatchingStrategy(stratName, stratDesc);
                 set.add(strategy);
@@ -290,26 +713,233 @@ public class DictionaryConnection {
             }
 
             //skip(read) . and ensure last line is 250
-            input.readLine();
+            input.skipText();
             checkStatus(doneCode);
+            done = true;
         }
         catch (IOException e) {
-            System.out.println("Could not find I/O");
+            throw poison(e);
+        }
+        catch (DictConnectionException | RuntimeException e) {
+            abandonReply();
+            throw e;
+        }
+        finally {
+            endCommand(DictMetrics.Command.SHOW_STRAT, done ? set.size() : -1);
         }
 
         return set;
     }
 
+    /** Sets the executor used by the asynchronous variants of the requests. By default, each asynchronous request runs
+     * on its own virtual thread when the runtime supports it, or on a shared pool of daemon threads otherwise.
+     *
+     * @param executor Executor used to run asynchronous requests.
+     */
+    public void setAsyncExecutor(Executor executor) {
+        asyncExecutor = Objects.requireNonNull(executor);
+    }
+
+    /** Asynchronous variant of getDefinitions. Requests still share this connection, so they are sent one at a time;
+     * use a DictionaryConnectionPool to run requests in parallel.
+     *
+     * @param word     The word whose definition is to be retrieved.
+     * @param database The database to be used to retrieve the definition.
+     * @return A future completed with the definitions, or exceptionally with a DictConnectionException.
+     */
+    public CompletableFuture<Collection<Definition>> getDefinitionsAsync(String word, Database database) {
+        return AsyncExecutors.supply(() -> getDefinitions(word, database), asyncExecutor);
+    }
+
+    /** Asynchronous variant of getMatchList.
+     *
+     * @param word     The word whose definition is to be retrieved.
+     * @param strategy The strategy to be used to retrieve the list of matches (e.g., prefix, exact).
+     * @param database The database to be used to retrieve the definition.
+     * @return A future completed with the matches, or exceptionally with a DictConnectionException.
+     */
+    public CompletableFuture<Set<String>> getMatchListAsync(String word, MatchingStrategy strategy, Database database) {
+        return AsyncExecutors.supply(() -> getMatchList(word, strategy, database), asyncExecutor);
+    }
+
+    /** Asynchronous variant of getDatabaseList.
+     *
+     * @return A future completed with the databases, or exceptionally with a DictConnectionException.
+     */
+    public CompletableFuture<Collection<Database>> getDatabaseListAsync() {
+        return AsyncExecutors.supply(this::getDatabaseList, asyncExecutor);
+    }
+
+    /** Asynchronous variant of getStrategyList.
+     *
+     * @return A future completed with the strategies, or exceptionally with a DictConnectionException.
+     */
+    public CompletableFuture<Set<MatchingStrategy>> getStrategyListAsync() {
+        return AsyncExecutors.supply(this::getStrategyList, asyncExecutor);
+    }
+
+    /** Resolves the database named in a 151 status line using the catalog snapshot. If the server reports a database
+     * that was added after the snapshot was loaded, a Database object is built from the 151 line itself.
+     *
+     * @param databases Catalog snapshot used for this request
+     * @param details   Atoms of the 151 status details (word, database name, database description)
+     * @return The Database object for the definition
+     * @throws DictConnectionException If the details don't name a database.
+     */
+    static Database resolveDatabase(DatabaseCatalog.Snapshot databases, String[] details) throws DictConnectionException {
+        if (details.length < 2) {
+            throw new DictConnectionException("invalid definition header: " + String.join(" ", details));
+        }
+        String databaseName = details[1];
+        Database database = databases.get(databaseName);
+        if (database == null) {
+            database = new Database(databaseName, details.length > 2 ? details[2] : databaseName);
+        }
+        return database;
+    }
+
+    /** Prepares a call: checks that the connection is usable and that the deadline of the call (Deadline.current) has
+     * not expired yet, and bounds the reads of the call by that deadline.
+     *
+     * @throws DictConnectionException If the connection is closed, or DictTimeoutException if the deadline expired.
+     */
+    private void beginCall() throws DictConnectionException {
+        if (isClosed()) {
+            throw new DictConnectionException("connection to " + host + " is closed");
+        }
+        Deadline deadline = Deadline.current();
+        deadline.check();
+        input.setDeadline(deadline);
+    }
+
+    /** Caps the connect timeout with the time left before a deadline.
+     *
+     * @param timeoutMillis The connect timeout, 0 for no limit.
+     * @param deadline      Deadline of the current call.
+     * @return The timeout to pass to Socket.connect, 0 for no limit.
+     */
+    static int connectTimeout(int timeoutMillis, Deadline deadline) {
+        if (deadline.isNone()) {
+            return timeoutMillis;
+        }
+        //0 would mean no limit at all
+        long remaining = Math.max(1, deadline.remainingMillis());
+        return (int) (timeoutMillis == 0 ? Math.min(remaining, Integer.MAX_VALUE) : Math.min(remaining, timeoutMillis));
+    }
+
+    /** Closes the connection after an I/O error or a timeout in the middle of a command. The rest of the reply may
+     * still arrive, so the stream can't be trusted for another command; closing it makes sure the connection is not
+     * reused (a pool discards closed connections).
+     *
+     * @param e The I/O error.
+     * @return The exception to throw: DictTimeoutException for a timeout, DictConnectionException otherwise.
+     */
+    private DictConnectionException poison(IOException e) {
+        closeQuietly();
+        return e instanceof SocketTimeoutException ? new DictTimeoutException(e) : new DictConnectionException(e);
+    }
+
+    /** Closes the connection if a command failed before its whole reply was read, e.g. on a bad status line in the
+     * middle of a reply or an exception thrown by a consumer. The rest of the reply is still on its way, so the next
+     * command would read it as its own. A command answered with a single error status line leaves the stream in sync
+     * and the connection open.
+     */
+    private void abandonReply() {
+        if (replyPending) {
+            closeQuietly();
+        }
+    }
+
+    /** Sends a command, whose reply is pending until a final status line (2xx, 4xx or 5xx) is read.
+     *
+     * @param command The command, without line terminator.
+     * @throws IOException If the command could not be written.
+     */
+    private void send(String command) throws IOException {
+        replyPending = true;
+        output.send(command);
+    }
+
+    /** Takes the counters at the start of a command, if metrics are enabled.
+     */
+    private void startCommand() {
+        if (metrics == DictMetrics.NONE || input == null) {
+            return;
+        }
+        commandStartedAt = System.nanoTime();
+        commandBytesWritten = output.getBytesWritten();
+        startReply();
+    }
+
+    /** Takes the counters at the start of a reply, if metrics are enabled. Pipelined commands only call this, since
+     * they were all sent before their replies are read.
+     */
+    private void startReply() {
+        if (metrics == DictMetrics.NONE || input == null) {
+            return;
+        }
+        commandBytesRead = input.getBytesRead();
+        commandLines = input.getLinesRead();
+        input.markReply();
+    }
+
+    /** Reports the command started by startCommand to the metrics.
+     *
+     * @param command The command.
+     * @param results Number of results returned, or -1 if the command failed.
+     */
+    private void endCommand(DictMetrics.Command command, int results) {
+        if (metrics == DictMetrics.NONE || input == null) {
+            return;
+        }
+        endCommand(command, commandStartedAt, output.getBytesWritten() - commandBytesWritten, results);
+    }
+
+    /** Reports a command whose reply was read since startReply to the metrics.
+     *
+     * @param command      The command.
+     * @param sentAt       When the command was sent.
+     * @param bytesWritten Number of bytes of the command.
+     * @param results      Number of results returned, or -1 if the command failed.
+     */
+    private void endCommand(DictMetrics.Command command, long sentAt, long bytesWritten, int results) {
+        long now = System.nanoTime();
+        long repliedAt = input.getReplyStartedAt();
+        metrics.commandCompleted(command, repliedAt == 0 ? -1 : repliedAt - sentAt, now - sentAt, bytesWritten,
+                input.getBytesRead() - commandBytesRead, input.getLinesRead() - commandLines, Math.max(results, 0),
+                results < 0);
+    }
+
     /** Checks if the server returns the correct status code
      * @param  code The status code to check the server status against
      *
-     * @return The current status returned by the server
-     * @throws DictConnectionException If the connection was interrupted or the messages don't match their expected value.
+     * @return The current status code returned by the server, its details can be read from the input
+     * @throws IOException If the status line could not be read.
+     * @throws DictConnectionException If the messages don't match their expected value.
+     */
+    private int checkStatus(int code) throws IOException, DictConnectionException {
+        int status = readStatus();
+        if (status != code) {
+            throw new DictStatusException(status, "expected status " + code + " but got " + status + " " + input.text());
+        }
+        return status;
+    }
+
+    /** Reads a status line. A 421 means the server is closing the connection (e.g. it is shutting down or the
+     * connection was idle for too long), so the connection is marked closed right away instead of failing on the next
+     * command.
+     *
+     * @return The status code.
+     * @throws IOException If the status line could not be read.
+     * @throws DictConnectionException If the line is not a status line, or DictStatusException for a 421.
      */
-    private Status checkStatus(int code) throws DictConnectionException {
-        Status status = Status.readStatus(input);
-        if (status.getStatusCode() != code) {
-            throw new DictConnectionException();
+    private int readStatus() throws IOException, DictConnectionException {
+        int status = input.readStatus();
+        //preliminary (1xx) and intermediate (3xx) statuses are followed by more of the reply
+        replyPending = status < 200 || (status >= 300 && status < 400);
+        if (status == 421) {
+            closeQuietly();
+            throw new DictStatusException(status, "connection closed by server: " + status + " " + input.text());
         }
         return status;
     }
@@ -0,0 +1,440 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.exception.DictConnectionException;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/** Keeps warm DictionaryConnection instances per (host, port), so threads can share a bounded number of connections
+ * instead of serializing on a single one. Returning a connection to the pool keeps its socket open, so borrowing it
+ * again needs neither a new TCP handshake nor reading a new 220 banner.
+ */
+public class DictionaryConnectionPool {
+
+    /** Work done with a borrowed connection.
+     */
+    public interface PooledCall<T> {
+        T call(DictionaryConnection connection) throws DictConnectionException;
+    }
+
+    private static final int DEFAULT_PORT = 2628;
+
+    private final int minIdle;
+    private final int maxTotal;
+    private final long idleTimeoutMillis;
+    private long borrowTimeoutMillis = TimeUnit.SECONDS.toMillis(30);
+    private volatile boolean validateOnBorrow = true;
+    private volatile Executor asyncExecutor = AsyncExecutors.defaultExecutor();
+    private final ConnectionOptions options = new ConnectionOptions();
+
+    private final ConcurrentMap<String, HostPool> pools = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    /** Creates a new pool. Idle connections are checked once per second: connections idle for longer than the idle
+     * timeout are closed, as long as at least minIdle connections remain for that host.
+     *
+     * @param minIdle     Number of idle connections kept open per host once the host has been used.
+     * @param maxTotal    Maximum number of connections (idle and borrowed) per host.
+     * @param idleTimeout Time after which an idle connection above minIdle is closed.
+     * @param unit        Unit of the idle timeout.
+     */
+    public DictionaryConnectionPool(int minIdle, int maxTotal, long idleTimeout, TimeUnit unit) {
+        if (maxTotal < 1 || minIdle < 0 || minIdle > maxTotal) {
+            throw new IllegalArgumentException("invalid pool size: min " + minIdle + ", max " + maxTotal);
+        }
+        this.minIdle = minIdle;
+        this.maxTotal = maxTotal;
+        this.idleTimeoutMillis = unit.toMillis(idleTimeout);
+
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "dict-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleWithFixedDelay(this::maintain, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /** Sets how long borrow waits for a connection when the host already has maxTotal connections in use.
+     *
+     * @param timeout Maximum waiting time.
+     * @param unit    Unit of the timeout.
+     */
+    public void setBorrowTimeout(long timeout, TimeUnit unit) {
+        borrowTimeoutMillis = unit.toMillis(timeout);
+    }
+
+    /** Sets whether idle connections are probed with STATUS before being handed out. Enabled by default.
+     *
+     * @param validateOnBorrow True to validate connections taken from the idle list.
+     */
+    public void setValidateOnBorrow(boolean validateOnBorrow) {
+        this.validateOnBorrow = validateOnBorrow;
+    }
+
+    /** Sets the metrics that connections opened from now on report to, e.g. a shared DictionaryMetrics.
+     *
+     * @param metrics The metrics, or DictMetrics.NONE to disable them.
+     */
+    public void setMetrics(DictMetrics metrics) {
+        options.setMetrics(metrics);
+    }
+
+    /** Returns the options used to open new connections, which can be changed to set their timeouts, e.g.
+     * pool.getConnectionOptions().setConnectTimeout(2, TimeUnit.SECONDS). Connections already open keep their settings.
+     *
+     * @return The options of this pool.
+     */
+    public ConnectionOptions getConnectionOptions() {
+        return options;
+    }
+
+    /** Borrows a connection to a host using the default DICT port.
+     *
+     * @param host Name of the host where the DICT server is running
+     * @return A connection that must be given back with release or invalidate.
+     * @throws DictConnectionException If no connection could be established or none became available in time.
+     */
+    public DictionaryConnection borrow(String host) throws DictConnectionException {
+        return borrow(host, DEFAULT_PORT);
+    }
+
+    /** Borrows a connection to a host, reusing an idle one when possible. If maxTotal connections are already in use,
+     * waits for one to be released. Waiting, validating an idle connection and opening a new one are all bounded by
+     * the deadline of the current call (Deadline.current), if any.
+     *
+     * @param host Name of the host where the DICT server is running
+     * @param port Port number used by the DICT server
+     * @return A connection that must be given back with release or invalidate.
+     * @throws DictConnectionException If no connection could be established or none became available in time, or
+     * DictTimeoutException if the deadline of the call expired.
+     */
+    public DictionaryConnection borrow(String host, int port) throws DictConnectionException {
+        if (closed) {
+            throw new DictConnectionException("connection pool is closed");
+        }
+        return pools.computeIfAbsent(key(host, port), k -> new HostPool(host, port)).borrow();
+    }
+
+    /** Gives a borrowed connection back to the pool. Connections that were closed while borrowed are discarded.
+     *
+     * @param connection Connection obtained from borrow.
+     */
+    public void release(DictionaryConnection connection) {
+        HostPool pool = pools.get(key(connection.getHost(), connection.getPort()));
+        if (pool == null) {
+            connection.close();
+            return;
+        }
+        pool.release(connection);
+    }
+
+    /** Closes a borrowed connection that should not be reused, e.g. after a protocol error left it in an unknown state.
+     *
+     * @param connection Connection obtained from borrow.
+     */
+    public void invalidate(DictionaryConnection connection) {
+        HostPool pool = pools.get(key(connection.getHost(), connection.getPort()));
+        if (pool != null) {
+            pool.discard(connection);
+        }
+        else {
+            connection.close();
+        }
+    }
+
+    /** Borrows a connection, runs the given call with it and gives it back. If the call fails, the connection is
+     * invalidated instead of being returned, since the reply may have been left half read.
+     *
+     * @param host Name of the host where the DICT server is running
+     * @param port Port number used by the DICT server
+     * @param call Work to be done with the connection
+     * @return The value returned by the call.
+     * @throws DictConnectionException If no connection could be borrowed or the call failed.
+     */
+    public <T> T execute(String host, int port, PooledCall<T> call) throws DictConnectionException {
+        DictionaryConnection connection = borrow(host, port);
+        boolean ok = false;
+        try {
+            T result = call.call(connection);
+            ok = true;
+            return result;
+        }
+        finally {
+            if (ok) {
+                release(connection);
+            }
+            else {
+                invalidate(connection);
+            }
+        }
+    }
+
+    /** Asynchronous variant of execute. Each call borrows its own connection, so calls to the same host run in
+     * parallel up to maxTotal, which makes it possible to fan out lookups across databases. The call, including
+     * borrowing the connection, runs under the deadline of the calling thread (Deadline.current).
+     *
+     * @param host Name of the host where the DICT server is running
+     * @param port Port number used by the DICT server
+     * @param call Work to be done with the connection
+     * @return A future completed with the value returned by the call, or exceptionally with a DictConnectionException.
+     */
+    public <T> CompletableFuture<T> executeAsync(String host, int port, PooledCall<T> call) {
+        Deadline deadline = Deadline.current();
+        return AsyncExecutors.supply(() -> Deadline.within(deadline, () -> execute(host, port, call)), asyncExecutor);
+    }
+
+    /** Sets the executor used by executeAsync. By default, each call runs on its own virtual thread when the runtime
+     * supports it.
+     *
+     * @param executor Executor used to run asynchronous calls.
+     */
+    public void setAsyncExecutor(Executor executor) {
+        asyncExecutor = Objects.requireNonNull(executor);
+    }
+
+    /** @param host Name of the host.
+     * @param port Port number.
+     * @return Number of idle connections currently kept for that host.
+     */
+    public int getIdleCount(String host, int port) {
+        HostPool pool = pools.get(key(host, port));
+        return pool == null ? 0 : pool.idleCount();
+    }
+
+    /** @param host Name of the host.
+     * @param port Port number.
+     * @return Number of connections currently open (idle or borrowed) for that host.
+     */
+    public int getTotalCount(String host, int port) {
+        HostPool pool = pools.get(key(host, port));
+        return pool == null ? 0 : pool.totalCount();
+    }
+
+    /** Closes all idle connections and stops the eviction task. Connections that are still borrowed are closed when
+     * they are released.
+     */
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        for (HostPool pool : pools.values()) {
+            pool.closeIdle();
+        }
+    }
+
+    private void maintain() {
+        for (HostPool pool : pools.values()) {
+            try {
+                pool.evictAndFill();
+            }
+            //keep maintaining the other hosts
+            catch (RuntimeException e) {
+                System.err.println("unable to maintain connection pool for " + pool.host);
+            }
+        }
+    }
+
+    private static String key(String host, int port) {
+        return host + ":" + port;
+    }
+
+    /** An idle connection and the time it was returned to the pool.
+     */
+    private static final class IdleConnection {
+
+        private final DictionaryConnection connection;
+        private final long idleSince;
+
+        private IdleConnection(DictionaryConnection connection, long idleSince) {
+            this.connection = connection;
+            this.idleSince = idleSince;
+        }
+    }
+
+    /** Connections to a single (host, port).
+     */
+    private final class HostPool {
+
+        private final String host;
+        private final int port;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition available = lock.newCondition();
+        private final Deque<IdleConnection> idle = new ArrayDeque<>();
+        private int total;
+
+        private HostPool(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+
+        private DictionaryConnection borrow() throws DictConnectionException {
+            Deadline call = Deadline.current();
+            //elapsed time is compared against the timeout rather than an end time, which would overflow for huge timeouts
+            long timeout = Math.min(TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis), call.remainingNanos());
+            long start = System.nanoTime();
+            while (true) {
+                call.check();
+                IdleConnection candidate = null;
+                lock.lock();
+                try {
+                    while (idle.isEmpty() && total >= maxTotal) {
+                        long remaining = timeout - (System.nanoTime() - start);
+                        if (remaining <= 0) {
+                            //the deadline of the call may be the shorter of the two
+                            call.check();
+                            throw new DictConnectionException("timed out waiting for a connection to " + key(host, port));
+                        }
+                        available.awaitNanos(remaining);
+                    }
+                    if (!idle.isEmpty()) {
+                        //most recently used first, it is the most likely to still be open
+                        candidate = idle.pollFirst();
+                    }
+                    else {
+                        total++;
+                    }
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new DictConnectionException("interrupted while waiting for a connection");
+                }
+                finally {
+                    lock.unlock();
+                }
+
+                if (candidate == null) {
+                    return open();
+                }
+                if (!validateOnBorrow || candidate.connection.isAlive()) {
+                    return candidate.connection;
+                }
+                discard(candidate.connection);
+            }
+        }
+
+        //total was already increased for this connection
+        private DictionaryConnection open() throws DictConnectionException {
+            DictionaryConnection connection = null;
+            try {
+                connection = new DictionaryConnection(host, port, options);
+            }
+            finally {
+                if (connection == null || connection.isClosed()) {
+                    released();
+                }
+            }
+            if (connection.isClosed()) {
+                throw new DictConnectionException("could not connect to " + key(host, port));
+            }
+            return connection;
+        }
+
+        private void release(DictionaryConnection connection) {
+            if (closed || connection.isClosed()) {
+                discard(connection);
+                return;
+            }
+            lock.lock();
+            try {
+                idle.addFirst(new IdleConnection(connection, System.currentTimeMillis()));
+                available.signal();
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        private void discard(DictionaryConnection connection) {
+            connection.close();
+            released();
+        }
+
+        private void released() {
+            lock.lock();
+            try {
+                total--;
+                available.signal();
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        private int idleCount() {
+            lock.lock();
+            try {
+                return idle.size();
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        private int totalCount() {
+            lock.lock();
+            try {
+                return total;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        private void evictAndFill() {
+            List<DictionaryConnection> expired = new ArrayList<>();
+            int missing;
+            lock.lock();
+            try {
+                //oldest idle connections are at the end of the deque
+                long now = System.currentTimeMillis();
+                while (idle.size() > minIdle && now - idle.peekLast().idleSince > idleTimeoutMillis) {
+                    expired.add(idle.pollLast().connection);
+                }
+                missing = Math.min(minIdle - idle.size(), maxTotal - (total - expired.size()));
+                total += Math.max(missing, 0);
+            }
+            finally {
+                lock.unlock();
+            }
+
+            for (DictionaryConnection connection : expired) {
+                discard(connection);
+            }
+            for (int i = 0; i < missing; i++) {
+                try {
+                    release(open());
+                }
+                //host is down, try again on the next run
+                catch (DictConnectionException e) {
+                    for (int j = i + 1; j < missing; j++) {
+                        released();
+                    }
+                    return;
+                }
+            }
+        }
+
+        private void closeIdle() {
+            List<IdleConnection> toClose;
+            lock.lock();
+            try {
+                toClose = new ArrayList<>(idle);
+                idle.clear();
+            }
+            finally {
+                lock.unlock();
+            }
+            for (IdleConnection connection : toClose) {
+                discard(connection.connection);
+            }
+        }
+    }
+}
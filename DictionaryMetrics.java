@@ -0,0 +1,79 @@
+package ca.ubc.cs317.dict.net;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/** The built-in DictMetrics: per-command counters and latency histograms (CommandStatistics), which can be read
+ * directly or through JMX. One instance is usually shared by all the connections to a server, e.g. passed to every
+ * DictionaryConnection created by a pool.
+ */
+public class DictionaryMetrics implements DictMetrics {
+
+    private final Map<Command, CommandStatistics> statistics = new EnumMap<>(Command.class);
+    private final List<ObjectName> registered = new ArrayList<>();
+
+    public DictionaryMetrics() {
+        for (Command command : Command.values()) {
+            statistics.put(command, new CommandStatistics(command));
+        }
+    }
+
+    @Override
+    public void commandCompleted(Command command, long waitNanos, long totalNanos, long bytesWritten, long bytesRead,
+                                 long lines, int results, boolean failed) {
+        statistics.get(command).record(waitNanos, totalNanos, bytesWritten, bytesRead, lines, results, failed);
+    }
+
+    /** @param command A command.
+     * @return The statistics of that command.
+     */
+    public CommandStatistics getStatistics(Command command) {
+        return statistics.get(command);
+    }
+
+    /** Registers one MXBean per command with the platform MBean server, named
+     * "ca.ubc.cs317.dict:type=DictionaryMetrics,name=&lt;name&gt;,command=&lt;command&gt;".
+     *
+     * @param name Name distinguishing this instance, e.g. the host of the server.
+     * @throws JMException If the beans could not be registered, e.g. because the name is already used.
+     */
+    public synchronized void registerMBeans(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (CommandStatistics stats : statistics.values()) {
+            ObjectName objectName = new ObjectName("ca.ubc.cs317.dict:type=DictionaryMetrics,name="
+                    + ObjectName.quote(name) + ",command=" + stats.getCommand());
+            server.registerMBean(stats, objectName);
+            registered.add(objectName);
+        }
+    }
+
+    /** Unregisters the MXBeans registered by registerMBeans, if any.
+     */
+    public synchronized void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName : registered) {
+            try {
+                server.unregisterMBean(objectName);
+            }
+            catch (JMException e) {
+                System.err.println("exception ignored");
+            }
+        }
+        registered.clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (CommandStatistics stats : statistics.values()) {
+            builder.append(stats).append('\n');
+        }
+        return builder.toString();
+    }
+}
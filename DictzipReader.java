@@ -0,0 +1,161 @@
+package ca.ubc.cs317.dict.net;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/** Random access to a dictzip (.dict.dz) file. Dictzip is gzip with the data compressed in independent chunks of a
+ * fixed uncompressed size, whose compressed sizes are listed in the "RA" extra field of the header. Reading a range
+ * only inflates the chunks it overlaps, straight from a memory-mapped view of the file. Recently inflated chunks are
+ * kept in a small cache, since neighbouring entries usually share a chunk.
+ */
+final class DictzipReader {
+
+    private static final int FTEXT_HCRC = 0x02;
+    private static final int FEXTRA = 0x04;
+    private static final int FNAME = 0x08;
+    private static final int FCOMMENT = 0x10;
+
+    private final MappedByteBuffer data;
+    private final int chunkLength;
+    private final long[] chunkOffsets;
+    private final int[] chunkSizes;
+    private final ResultCache<Integer, byte[]> chunks = new ResultCache<>(64, 1, TimeUnit.HOURS);
+
+    DictzipReader(Path file) throws IOException {
+        data = DictdDatabase.map(file);
+
+        if (u8(0) != 0x1f || u8(1) != 0x8b || u8(2) != 8) {
+            throw new IOException(file + " is not a gzip file");
+        }
+        int flags = u8(3);
+        if ((flags & FEXTRA) == 0) {
+            throw new IOException(file + " has no dictzip random access table");
+        }
+
+        //10-byte fixed header, then the extra field
+        int extraLength = u16(10);
+        int position = 12;
+        int extraEnd = position + extraLength;
+        int chunkLength = -1;
+        int[] sizes = null;
+        while (position + 4 <= extraEnd) {
+            int id1 = u8(position);
+            int id2 = u8(position + 1);
+            int length = u16(position + 2);
+            if (id1 == 'R' && id2 == 'A') {
+                chunkLength = u16(position + 6);
+                int count = u16(position + 8);
+                sizes = new int[count];
+                for (int i = 0; i < count; i++) {
+                    sizes[i] = u16(position + 10 + 2 * i);
+                }
+            }
+            position += 4 + length;
+        }
+        if (sizes == null) {
+            throw new IOException(file + " has no dictzip random access table");
+        }
+
+        position = extraEnd;
+        if ((flags & FNAME) != 0) {
+            position = skipZeroTerminated(position);
+        }
+        if ((flags & FCOMMENT) != 0) {
+            position = skipZeroTerminated(position);
+        }
+        if ((flags & FTEXT_HCRC) != 0) {
+            position += 2;
+        }
+
+        this.chunkLength = chunkLength;
+        this.chunkSizes = sizes;
+        this.chunkOffsets = new long[sizes.length];
+        long offset = position;
+        for (int i = 0; i < sizes.length; i++) {
+            chunkOffsets[i] = offset;
+            offset += sizes[i];
+        }
+    }
+
+    /** Reads a range of the uncompressed data.
+     *
+     * @param offset Offset in the uncompressed data.
+     * @param length Number of bytes to read.
+     * @return The uncompressed bytes.
+     * @throws IOException If the range is outside the file or a chunk could not be inflated.
+     */
+    byte[] read(long offset, int length) throws IOException {
+        byte[] result = new byte[length];
+        int copied = 0;
+        while (copied < length) {
+            long position = offset + copied;
+            int index = (int) (position / chunkLength);
+            if (index >= chunkSizes.length) {
+                throw new IOException("offset " + position + " is past the end of the dictionary");
+            }
+            byte[] chunk = chunk(index);
+            int from = (int) (position % chunkLength);
+            int count = Math.min(length - copied, chunk.length - from);
+            if (count <= 0) {
+                throw new IOException("offset " + position + " is past the end of the dictionary");
+            }
+            System.arraycopy(chunk, from, result, copied, count);
+            copied += count;
+        }
+        return result;
+    }
+
+    private byte[] chunk(int index) throws IOException {
+        byte[] chunk = chunks.get(index);
+        if (chunk != null) {
+            return chunk;
+        }
+
+        //absolute get, concurrent readers don't share a position
+        byte[] compressed = new byte[chunkSizes[index]];
+        data.get((int) chunkOffsets[index], compressed);
+
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed);
+            byte[] buffer = new byte[chunkLength];
+            int length = 0;
+            while (length < chunkLength && !inflater.finished()) {
+                int inflated = inflater.inflate(buffer, length, chunkLength - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflated;
+            }
+            chunk = length == chunkLength ? buffer : Arrays.copyOf(buffer, length);
+        }
+        catch (DataFormatException e) {
+            throw new IOException("corrupt dictzip chunk " + index, e);
+        }
+        finally {
+            inflater.end();
+        }
+        chunks.put(index, chunk);
+        return chunk;
+    }
+
+    private int u8(int position) {
+        return data.get(position) & 0xff;
+    }
+
+    private int u16(int position) {
+        return u8(position) | (u8(position + 1) << 8);
+    }
+
+    private int skipZeroTerminated(int position) {
+        while (data.get(position) != 0) {
+            position++;
+        }
+        return position + 1;
+    }
+}
@@ -0,0 +1,53 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.exception.DictConnectionException;
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+
+import java.util.Collection;
+import java.util.Set;
+
+/** Base class of the decorators: forwards every operation to the wrapped client, so a decorator only overrides the
+ * operations it changes.
+ */
+public abstract class ForwardingDictionaryClient implements DictionaryClient {
+
+    protected final DictionaryClient delegate;
+
+    /** @param delegate The client the operations are forwarded to.
+     */
+    protected ForwardingDictionaryClient(DictionaryClient delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Collection<Definition> getDefinitions(String word, Database database) throws DictConnectionException {
+        return delegate.getDefinitions(word, database);
+    }
+
+    @Override
+    public Set<String> getMatchList(String word, MatchingStrategy strategy, Database database) throws DictConnectionException {
+        return delegate.getMatchList(word, strategy, database);
+    }
+
+    @Override
+    public Collection<Database> getDatabaseList() throws DictConnectionException {
+        return delegate.getDatabaseList();
+    }
+
+    @Override
+    public Set<MatchingStrategy> getStrategyList() throws DictConnectionException {
+        return delegate.getStrategyList();
+    }
+
+    @Override
+    public DatabaseCatalog getCatalog() {
+        return delegate.getCatalog();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
@@ -0,0 +1,209 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.exception.DictConnectionException;
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Decorates a DictionaryClient to cut the tail latency of DEFINE and MATCH with hedged requests: when a request
+ * hasn't completed after the given percentile of recent latencies (95th by default), the same request is sent a second
+ * time and whichever reply arrives first is returned. The wrapped client must be able to run both at once on separate
+ * connections, e.g. a PooledDictionaryClient, or a LoadBalancedDictionaryClient, which also sends the hedge to another
+ * replica since the first one is busier.
+ *
+ * The losing request is not cancelled: it runs to the end of its reply, so its connection is drained and goes back to
+ * the pool in a clean state rather than being closed. Hedges are taken from a RetryBudget (5% of the requests by
+ * default), so a slow server gets at most that much extra load. No request is hedged before enough latencies were
+ * recorded to estimate the percentile.
+ */
+public class HedgingDictionaryClient extends ForwardingDictionaryClient {
+
+    private static final int RECOMPUTE_EVERY = 100;
+
+    private volatile double percentile = 95;
+    private volatile int windowSize = 1000;
+    private volatile RetryBudget budget = new RetryBudget(0.05, 1);
+    private volatile Executor executor = AsyncExecutors.defaultExecutor();
+
+    private volatile LatencyHistogram window = new LatencyHistogram();
+    private volatile long hedgeDelayNanos = -1;
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+
+    /** @param client The client requests and hedges are sent to; it must support concurrent calls.
+     */
+    public HedgingDictionaryClient(DictionaryClient client) {
+        super(client);
+    }
+
+    /** Sets the percentile of recent latencies after which a request is hedged. Defaults to 95.
+     *
+     * @param percentile Percentile between 0 and 100 (exclusive).
+     * @return This object.
+     */
+    public HedgingDictionaryClient setPercentile(double percentile) {
+        if (percentile <= 0 || percentile >= 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+        this.percentile = percentile;
+        return this;
+    }
+
+    /** Sets how many latencies make up the recent history the percentile is computed on. Defaults to 1000.
+     *
+     * @param windowSize Number of latencies, at least 100.
+     * @return This object.
+     */
+    public HedgingDictionaryClient setWindowSize(int windowSize) {
+        if (windowSize < RECOMPUTE_EVERY) {
+            throw new IllegalArgumentException("window must hold at least " + RECOMPUTE_EVERY + " latencies");
+        }
+        this.windowSize = windowSize;
+        return this;
+    }
+
+    /** Sets the budget hedges are taken from. Defaults to 5% of the requests plus one hedge per second.
+     *
+     * @param budget The budget.
+     * @return This object.
+     */
+    public HedgingDictionaryClient setBudget(RetryBudget budget) {
+        this.budget = Objects.requireNonNull(budget);
+        return this;
+    }
+
+    /** Sets the executor requests run on while the caller waits for the first reply. Defaults to the executor of the
+     * asynchronous calls (virtual threads when available).
+     *
+     * @param executor The executor.
+     * @return This object.
+     */
+    public HedgingDictionaryClient setExecutor(Executor executor) {
+        this.executor = Objects.requireNonNull(executor);
+        return this;
+    }
+
+    /** @param unit Unit of the result.
+     * @return The current delay after which requests are hedged, or -1 if not enough latencies were recorded yet.
+     */
+    public long getHedgeDelay(TimeUnit unit) {
+        long delay = hedgeDelayNanos;
+        return delay < 0 ? -1 : unit.convert(delay, TimeUnit.NANOSECONDS);
+    }
+
+    /** @return Number of hedged requests sent.
+     */
+    public long getHedgeCount() {
+        return hedges.sum();
+    }
+
+    /** @return Number of hedged requests whose reply arrived before the reply of the original request.
+     */
+    public long getHedgeWinCount() {
+        return hedgeWins.sum();
+    }
+
+    @Override
+    public Collection<Definition> getDefinitions(String word, Database database) throws DictConnectionException {
+        return hedge(() -> delegate.getDefinitions(word, database));
+    }
+
+    @Override
+    public Set<String> getMatchList(String word, MatchingStrategy strategy, Database database) throws DictConnectionException {
+        return hedge(() -> delegate.getMatchList(word, strategy, database));
+    }
+
+    private <T> T hedge(Deadline.Call<T> call) throws DictConnectionException {
+        RetryBudget budget = this.budget;
+        budget.onRequest();
+        long delay = hedgeDelayNanos;
+        if (delay < 0) {
+            //not enough history yet, no need to leave the calling thread
+            return timed(call);
+        }
+
+        Deadline deadline = Deadline.current();
+        CompletableFuture<T> first = start(call, deadline);
+        try {
+            return first.get(delay, TimeUnit.NANOSECONDS);
+        }
+        catch (TimeoutException e) {
+            //too slow, hedge below
+        }
+        catch (ExecutionException e) {
+            return AsyncExecutors.await(first);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DictConnectionException("interrupted while waiting for a reply");
+        }
+        if (deadline.isExpired() || !budget.tryAcquire()) {
+            return AsyncExecutors.await(first);
+        }
+
+        hedges.increment();
+        CompletableFuture<T> second = start(call, deadline);
+        CompletableFuture<T> race = new CompletableFuture<>();
+        AtomicInteger failed = new AtomicInteger();
+        first.whenComplete((result, failure) -> finish(race, result, failure, failed));
+        second.whenComplete((result, failure) -> {
+            if (finish(race, result, failure, failed)) {
+                hedgeWins.increment();
+            }
+        });
+        return AsyncExecutors.await(race);
+    }
+
+    /** Completes the race with the first reply, or with the last failure if both requests failed.
+     *
+     * @return True if this reply won the race.
+     */
+    private static <T> boolean finish(CompletableFuture<T> race, T result, Throwable failure, AtomicInteger failed) {
+        if (failure == null) {
+            return race.complete(result);
+        }
+        if (failed.incrementAndGet() == 2) {
+            race.completeExceptionally(failure instanceof CompletionException && failure.getCause() != null
+                    ? failure.getCause() : failure);
+        }
+        return false;
+    }
+
+    private <T> CompletableFuture<T> start(Deadline.Call<T> call, Deadline deadline) {
+        return AsyncExecutors.supply(() -> Deadline.within(deadline, () -> timed(call)), executor);
+    }
+
+    private <T> T timed(Deadline.Call<T> call) throws DictConnectionException {
+        long start = System.nanoTime();
+        T result = call.call();
+        record(System.nanoTime() - start);
+        return result;
+    }
+
+    /** Records the latency of a successful request, and periodically updates the hedge delay from the current window.
+     */
+    private void record(long nanos) {
+        LatencyHistogram current = window;
+        current.record(nanos);
+        long count = current.getCount();
+        if (count % RECOMPUTE_EVERY == 0) {
+            hedgeDelayNanos = current.getValueAtPercentile(percentile);
+            if (count >= windowSize) {
+                //start a new window, the delay computed from the old one is used until the next update
+                window = new LatencyHistogram();
+            }
+        }
+    }
+}
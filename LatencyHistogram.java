@@ -0,0 +1,136 @@
+package ca.ubc.cs317.dict.net;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/** A lock-free histogram of latencies in nanoseconds, with the same log-linear bucketing as HdrHistogram: values are
+ * grouped by power of two, and each power of two is split into 64 linear sub-buckets, so every recorded value is kept
+ * with a relative error below 1/64 (about 1.6%) whatever its magnitude. Recording is a few shifts and one atomic
+ * increment, with no allocation, so it can be done on every request. Values above about 68 seconds are recorded as 68
+ * seconds.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_HALF_COUNT_MAGNITUDE = 6;
+    private static final int SUB_BUCKET_HALF_COUNT = 1 << SUB_BUCKET_HALF_COUNT_MAGNITUDE;
+    private static final int SUB_BUCKET_MASK = 2 * SUB_BUCKET_HALF_COUNT - 1;
+    private static final long HIGHEST_TRACKABLE_VALUE = (1L << 36) - 1;
+    private static final int BUCKET_COUNT = 36 - SUB_BUCKET_HALF_COUNT_MAGNITUDE;
+    private static final int LENGTH = (BUCKET_COUNT + 1) * SUB_BUCKET_HALF_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(LENGTH);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /** Records one value.
+     *
+     * @param nanos The latency in nanoseconds. Negative values are ignored.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        long value = Math.min(nanos, HIGHEST_TRACKABLE_VALUE);
+        counts.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            //retry, another thread raised the max
+        }
+    }
+
+    /** @return Number of values recorded.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /** @return Largest value recorded, in nanoseconds, 0 if none.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /** @return Mean of the values recorded, in nanoseconds, 0 if none.
+     */
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /** Returns the value below which the given percentage of the recorded values fall. Recording may go on
+     * concurrently; the result then reflects some consistent-enough point during the call.
+     *
+     * @param percentile Percentile between 0 and 100, e.g. 99.9.
+     * @return The value at that percentile in nanoseconds (the highest value equivalent to it), 0 if nothing was
+     * recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[LENGTH];
+        long total = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                return Math.min(highestEquivalentValue(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /** Convenience for getValueAtPercentile in another unit.
+     *
+     * @param percentile Percentile between 0 and 100.
+     * @param unit       Unit of the result.
+     * @return The value at that percentile, truncated to the unit.
+     */
+    public long getValueAtPercentile(double percentile, TimeUnit unit) {
+        return unit.convert(getValueAtPercentile(percentile), TimeUnit.NANOSECONDS);
+    }
+
+    /** Clears the histogram. Values recorded concurrently may or may not be kept.
+     */
+    public void reset() {
+        for (int i = 0; i < LENGTH; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount() + ", mean=" + (long) getMean() + "ns, p50=" + getValueAtPercentile(50)
+                + "ns, p99=" + getValueAtPercentile(99) + "ns, max=" + getMax() + "ns";
+    }
+
+    private static int index(long value) {
+        //bucket 0 holds 0..127 exactly, bucket b holds 64..127 sub-buckets of width 2^b
+        int bucket = Math.max(0, 63 - Long.numberOfLeadingZeros(value | SUB_BUCKET_MASK) - SUB_BUCKET_HALF_COUNT_MAGNITUDE);
+        int subBucket = (int) (value >>> bucket);
+        return ((bucket + 1) << SUB_BUCKET_HALF_COUNT_MAGNITUDE) + subBucket - SUB_BUCKET_HALF_COUNT;
+    }
+
+    private static long highestEquivalentValue(int index) {
+        int bucket = (index >> SUB_BUCKET_HALF_COUNT_MAGNITUDE) - 1;
+        int subBucket = (index & (SUB_BUCKET_HALF_COUNT - 1)) + SUB_BUCKET_HALF_COUNT;
+        if (bucket < 0) {
+            subBucket -= SUB_BUCKET_HALF_COUNT;
+            bucket = 0;
+        }
+        return ((long) subBucket << bucket) + (1L << bucket) - 1;
+    }
+}
@@ -0,0 +1,320 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.exception.DictConnectionException;
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Spreads requests across several replicas of a DICT server, each reached through its own DictionaryClient (usually
+ * a PooledDictionaryClient or a ReconnectingDictionaryClient per host).
+ *
+ * Each request goes to the less busy of two replicas picked at random (power of two choices), busy meaning the number
+ * of requests in flight on that replica. A replica that fails several requests in a row is ejected for a while, and
+ * ejected again for twice as long if its first request after coming back fails too. When all the replicas that could
+ * serve a request are ejected, they are used anyway rather than failing the request.
+ *
+ * All DICT lookups are idempotent, so a request that fails transiently (see RetryingDictionaryClient) is sent again
+ * to another replica, as long as its deadline allows it. Replicas don't need to have the same databases: a request for
+ * a specific database only goes to the replicas whose catalog lists it, or whose catalog is not loaded yet. Requests
+ * for '*' and '!' go to any replica and only cover the databases of that replica; see ShardedDictionaryClient to
+ * merge databases spread over several servers.
+ */
+public class LoadBalancedDictionaryClient implements DictionaryClient {
+
+    /** An operation sent to one replica.
+     */
+    private interface ReplicaCall<T> {
+        T call(DictionaryClient replica) throws DictConnectionException;
+    }
+
+    private final List<Replica> replicas;
+    private final DatabaseCatalog catalog = new DatabaseCatalog(this::loadDatabases);
+    private final LongAdder failovers = new LongAdder();
+    private final LongAdder ejections = new LongAdder();
+    private volatile int maxAttempts = 3;
+    private volatile int ejectAfterFailures = 5;
+    private volatile long baseEjectionNanos = TimeUnit.SECONDS.toNanos(30);
+    private volatile long maxEjectionNanos = TimeUnit.MINUTES.toNanos(5);
+
+    /** @param replicas Clients of the replicas, one per server.
+     */
+    public LoadBalancedDictionaryClient(Collection<? extends DictionaryClient> replicas) {
+        if (replicas.isEmpty()) {
+            throw new IllegalArgumentException("at least one replica is needed");
+        }
+        List<Replica> list = new ArrayList<>();
+        for (DictionaryClient client : replicas) {
+            list.add(new Replica(client));
+        }
+        this.replicas = Collections.unmodifiableList(list);
+    }
+
+    /** Sets the maximum number of replicas a request is sent to, including the first one. Defaults to 3.
+     *
+     * @param maxAttempts Number of attempts, at least 1.
+     * @return This object.
+     */
+    public LoadBalancedDictionaryClient setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("at least one attempt is needed");
+        }
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    /** Sets when replicas are ejected. Defaults to 5 consecutive failures, for 30 seconds up to 5 minutes.
+     *
+     * @param consecutiveFailures Number of failed requests in a row after which a replica is ejected.
+     * @param baseEjectionTime    Duration of the first ejection, doubled on each consecutive ejection.
+     * @param maxEjectionTime     Maximum duration of an ejection.
+     * @param unit                Unit of the durations.
+     * @return This object.
+     */
+    public LoadBalancedDictionaryClient setOutlierDetection(int consecutiveFailures, long baseEjectionTime,
+                                                            long maxEjectionTime, TimeUnit unit) {
+        if (consecutiveFailures < 1 || baseEjectionTime <= 0 || maxEjectionTime < baseEjectionTime) {
+            throw new IllegalArgumentException("invalid outlier detection settings");
+        }
+        this.ejectAfterFailures = consecutiveFailures;
+        this.baseEjectionNanos = unit.toNanos(baseEjectionTime);
+        this.maxEjectionNanos = unit.toNanos(maxEjectionTime);
+        return this;
+    }
+
+    /** @return Number of replicas.
+     */
+    public int getReplicaCount() {
+        return replicas.size();
+    }
+
+    /** @return Number of replicas currently ejected.
+     */
+    public int getEjectedCount() {
+        long now = System.nanoTime();
+        int count = 0;
+        for (Replica replica : replicas) {
+            if (replica.isEjected(now)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** @return Number of times a replica was ejected.
+     */
+    public long getEjectionCount() {
+        return ejections.sum();
+    }
+
+    /** @return Number of requests sent again to another replica after a failure.
+     */
+    public long getFailoverCount() {
+        return failovers.sum();
+    }
+
+    @Override
+    public Collection<Definition> getDefinitions(String word, Database database) throws DictConnectionException {
+        return call(database.getName(), replica -> replica.getDefinitions(word, database));
+    }
+
+    @Override
+    public Set<String> getMatchList(String word, MatchingStrategy strategy, Database database) throws DictConnectionException {
+        return call(database.getName(), replica -> replica.getMatchList(word, strategy, database));
+    }
+
+    /** Retrieves the databases of all the replicas, which also refreshes their own catalogs, and publishes them in the
+     * catalog of this client. Databases are listed once, in the order the replicas first return them.
+     *
+     * @throws DictConnectionException If no replica returned its list of databases.
+     */
+    @Override
+    public Collection<Database> getDatabaseList() throws DictConnectionException {
+        return catalog.refresh().getDatabases();
+    }
+
+    @Override
+    public Set<MatchingStrategy> getStrategyList() throws DictConnectionException {
+        return call("*", DictionaryClient::getStrategyList);
+    }
+
+    @Override
+    public DatabaseCatalog getCatalog() {
+        return catalog;
+    }
+
+    /** Closes the clients of all the replicas.
+     */
+    @Override
+    public void close() {
+        catalog.stopAutoRefresh();
+        for (Replica replica : replicas) {
+            replica.client.close();
+        }
+    }
+
+    private <T> T call(String database, ReplicaCall<T> call) throws DictConnectionException {
+        List<Replica> tried = new ArrayList<>();
+        DictConnectionException failure = null;
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            Replica replica = choose(database, tried);
+            if (replica == null) {
+                break;
+            }
+            if (failure != null) {
+                if (Deadline.current().isExpired()) {
+                    break;
+                }
+                failovers.increment();
+            }
+            tried.add(replica);
+            replica.outstanding.incrementAndGet();
+            try {
+                T result = call.call(replica.client);
+                replica.succeeded();
+                return result;
+            }
+            catch (DictConnectionException e) {
+                if (!RetryingDictionaryClient.isRetryable(e)) {
+                    //the replica answered, the request itself is wrong
+                    replica.succeeded();
+                    throw e;
+                }
+                //running out of time is the caller's doing, not a sign that the replica is unhealthy
+                if (!(e instanceof DictTimeoutException && Deadline.current().isExpired())) {
+                    replica.failed();
+                }
+                failure = e;
+            }
+            finally {
+                replica.outstanding.decrementAndGet();
+            }
+        }
+        if (failure == null) {
+            failure = new DictConnectionException("no replica available for database " + database);
+        }
+        throw failure;
+    }
+
+    /** Picks the replica for the next attempt of a request, or null if there is none left to try.
+     */
+    private Replica choose(String database, List<Replica> tried) {
+        long now = System.nanoTime();
+        List<Replica> candidates = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            if (!tried.contains(replica) && replica.serves(database) && !replica.isEjected(now)) {
+                candidates.add(replica);
+            }
+        }
+        if (candidates.isEmpty()) {
+            //better to try an ejected replica than to fail without trying
+            for (Replica replica : replicas) {
+                if (!tried.contains(replica) && replica.serves(database)) {
+                    candidates.add(replica);
+                }
+            }
+        }
+        if (candidates.isEmpty() && tried.isEmpty()) {
+            //no replica lists the database, let one of them answer with the proper error
+            candidates.addAll(replicas);
+        }
+
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        Replica a = candidates.get(first);
+        Replica b = candidates.get(second);
+        return a.outstanding.get() <= b.outstanding.get() ? a : b;
+    }
+
+    private Collection<Database> loadDatabases() throws DictConnectionException {
+        Map<String, Database> databases = new LinkedHashMap<>();
+        DictConnectionException failure = null;
+        boolean loaded = false;
+        for (Replica replica : replicas) {
+            try {
+                for (Database database : replica.client.getDatabaseList()) {
+                    databases.putIfAbsent(database.getName(), database);
+                }
+                loaded = true;
+            }
+            catch (DictConnectionException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (!loaded) {
+            throw failure;
+        }
+        return databases.values();
+    }
+
+    /** A replica and its health.
+     */
+    private final class Replica {
+
+        private final DictionaryClient client;
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        //guarded by this
+        private int consecutiveFailures;
+        private int consecutiveEjections;
+        private long ejectedUntil;
+
+        Replica(DictionaryClient client) {
+            this.client = client;
+        }
+
+        /** @param database Name of a database, possibly '*' or '!'.
+         * @return False if the catalog of the replica is loaded and doesn't list the database.
+         */
+        boolean serves(String database) {
+            if ("*".equals(database) || "!".equals(database)) {
+                return true;
+            }
+            DatabaseCatalog.Snapshot snapshot = client.getCatalog().current();
+            return snapshot.isEmpty() || snapshot.get(database) != null;
+        }
+
+        synchronized boolean isEjected(long now) {
+            return consecutiveEjections > 0 && now - ejectedUntil < 0;
+        }
+
+        synchronized void succeeded() {
+            consecutiveFailures = 0;
+            if (!isEjected(System.nanoTime())) {
+                consecutiveEjections = 0;
+            }
+        }
+
+        synchronized void failed() {
+            long now = System.nanoTime();
+            consecutiveFailures++;
+            if (isEjected(now)) {
+                return;
+            }
+            //a replica that fails right after coming back is ejected again at once
+            if (consecutiveEjections > 0 || consecutiveFailures >= ejectAfterFailures) {
+                consecutiveEjections++;
+                long duration = baseEjectionNanos << Math.min(consecutiveEjections - 1, 20);
+                ejectedUntil = now + (duration <= 0 || duration > maxEjectionNanos ? maxEjectionNanos : duration);
+                ejections.increment();
+            }
+        }
+    }
+}
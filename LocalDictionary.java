@@ -0,0 +1,282 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.exception.DictConnectionException;
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/** Serves DEFINE, MATCH, SHOW DB and SHOW STRAT locally from dictd database files (name.index with name.dict or
+ * name.dict.dz), without a server. Results are the same as those of a dictd server using the same files, so callers
+ * can swap a local dictionary for a DictionaryConnection behind the DictionaryClient interface without noticing a
+ * difference other than latency. Files are memory-mapped and only the entries that are looked up are read. Instances
+ * are safe to share across threads.
+ */
+public class LocalDictionary implements DictionaryClient {
+
+    private static final Set<MatchingStrategy> STRATEGIES;
+
+    static {
+        Set<MatchingStrategy> strategies = new LinkedHashSet<>();
+        strategies.add(new MatchingStrategy("exact", "Match headwords exactly"));
+        strategies.add(new MatchingStrategy("prefix", "Match prefixes"));
+        strategies.add(new MatchingStrategy("substring", "Match substring occurring anywhere in a headword"));
+        strategies.add(new MatchingStrategy("suffix", "Match suffixes"));
+        strategies.add(new MatchingStrategy("lev", "Match headwords within Levenshtein distance one"));
+        STRATEGIES = Collections.unmodifiableSet(strategies);
+    }
+
+    private final Map<String, DictdDatabase> databases = new LinkedHashMap<>();
+    private final DatabaseCatalog catalog;
+    private volatile boolean closed;
+
+    /** Opens every dictd database found in a directory. Each name.index file is a database called name, whose text is
+     * read from name.dict.dz or name.dict. Databases are listed in the order of their names.
+     *
+     * @param directory Directory containing the database files.
+     * @throws DictConnectionException If the directory or one of the databases can't be read.
+     */
+    public LocalDictionary(Path directory) throws DictConnectionException {
+        List<Path> indexFiles = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.index")) {
+            for (Path indexFile : stream) {
+                indexFiles.add(indexFile);
+            }
+        }
+        catch (IOException e) {
+            throw new DictConnectionException(e);
+        }
+        Collections.sort(indexFiles);
+        for (Path indexFile : indexFiles) {
+            String name = indexFile.getFileName().toString();
+            open(name.substring(0, name.length() - ".index".length()), indexFile, DictdDatabase.dataFileFor(indexFile));
+        }
+        catalog = new DatabaseCatalog(this::getDatabaseList);
+        catalog.update(getDatabaseList());
+    }
+
+    /** Opens a single dictd database.
+     *
+     * @param name      Name of the database.
+     * @param indexFile The .index file.
+     * @param dataFile  The .dict or .dict.dz file.
+     * @throws DictConnectionException If the database can't be read.
+     */
+    public LocalDictionary(String name, Path indexFile, Path dataFile) throws DictConnectionException {
+        open(name, indexFile, dataFile);
+        catalog = new DatabaseCatalog(this::getDatabaseList);
+        catalog.update(getDatabaseList());
+    }
+
+    private void open(String name, Path indexFile, Path dataFile) throws DictConnectionException {
+        try {
+            databases.put(name, new DictdDatabase(name, indexFile, dataFile));
+        }
+        catch (IOException e) {
+            throw new DictConnectionException(e);
+        }
+    }
+
+    /** Closes the dictionary. The files stay mapped until the mappings are garbage collected, but no further lookups
+     * are accepted.
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    /** @return True if the dictionary has been closed.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /** Retrieves all definitions for a specific word.
+     *
+     * @param word The word whose definition is to be retrieved.
+     * @param database The database to be used to retrieve the definition. A special database may be specified,
+     *                 indicating either that all regular databases should be used (database name '*'), or that only
+     *                 definitions in the first database that has a definition for the word should be used
+     *                 (database '!').
+     * @return A collection of Definition objects, in the order of the databases.
+     * @throws DictConnectionException If the dictionary is closed, the database doesn't exist or a file can't be read.
+     */
+    @Override
+    public Collection<Definition> getDefinitions(String word, Database database) throws DictConnectionException {
+        Collection<Definition> set = new ArrayList<>();
+        for (DictdDatabase source : select(database)) {
+            for (DictdDatabase.Entry entry : source.exact(word)) {
+                Definition definition = new Definition(word, source.getDatabase());
+                for (String line : read(source, entry).split("\n", -1)) {
+                    definition.appendDefinition(line);
+                }
+                set.add(definition);
+            }
+            if (!set.isEmpty() && "!".equals(database.getName())) {
+                break;
+            }
+        }
+        return set;
+    }
+
+    /** Retrieves a list of matches for a specific word pattern.
+     *
+     * @param word     The word pattern to be matched.
+     * @param strategy The strategy to be used to retrieve the list of matches (one of getStrategyList).
+     * @param database The database to be used ('*' and '!' are allowed).
+     * @return A set of matched headwords.
+     * @throws DictConnectionException If the dictionary is closed, the database or strategy doesn't exist.
+     */
+    @Override
+    public Set<String> getMatchList(String word, MatchingStrategy strategy, Database database) throws DictConnectionException {
+        return getMatches(word, strategy, database).getWords();
+    }
+
+    /** Retrieves a list of matches for a specific word pattern, keeping the database each match comes from.
+     *
+     * @param word     The word pattern to be matched.
+     * @param strategy The strategy to be used to retrieve the list of matches (one of getStrategyList).
+     * @param database The database to be used ('*' and '!' are allowed).
+     * @return The (database, word) pairs, empty if there are none.
+     * @throws DictConnectionException If the dictionary is closed, the database or strategy doesn't exist.
+     */
+    public MatchResult getMatches(String word, MatchingStrategy strategy, Database database) throws DictConnectionException {
+        String name = strategy.getName();
+        if (!"exact".equals(name) && !"prefix".equals(name) && !"substring".equals(name)
+                && !"suffix".equals(name) && !"lev".equals(name)) {
+            throw new DictConnectionException("invalid strategy: " + name);
+        }
+
+        MatchResult.Builder result = new MatchResult.Builder();
+        for (DictdDatabase source : select(database)) {
+            Set<String> words = new LinkedHashSet<>();
+            if ("exact".equals(name) || "prefix".equals(name)) {
+                //both can use the sort order of the index
+                List<DictdDatabase.Entry> entries = "exact".equals(name) ? source.exact(word) : source.prefix(word);
+                for (DictdDatabase.Entry entry : entries) {
+                    words.add(entry.getHeadword());
+                }
+            }
+            else {
+                String pattern = word.toLowerCase(Locale.ROOT);
+                source.scan(entry -> {
+                    String headword = entry.getHeadword().toLowerCase(Locale.ROOT);
+                    if (("substring".equals(name) && headword.contains(pattern))
+                            || ("suffix".equals(name) && headword.endsWith(pattern))
+                            || ("lev".equals(name) && withinOneEdit(headword, pattern))) {
+                        words.add(entry.getHeadword());
+                    }
+                });
+            }
+            boolean matched = false;
+            for (String match : words) {
+                if (!DictdDatabase.isSpecial(match)) {
+                    result.add(source.getDatabase().getName(), match);
+                    matched = true;
+                }
+            }
+            if (matched && "!".equals(database.getName())) {
+                break;
+            }
+        }
+        return result.build();
+    }
+
+    /** @return The databases of this dictionary, in the order they were opened.
+     * @throws DictConnectionException If the dictionary is closed.
+     */
+    @Override
+    public Collection<Database> getDatabaseList() throws DictConnectionException {
+        checkOpen();
+        Collection<Database> list = new ArrayList<>();
+        for (DictdDatabase database : databases.values()) {
+            list.add(database.getDatabase());
+        }
+        return list;
+    }
+
+    /** Returns the database catalog of this dictionary, for code written against DictionaryConnection.getCatalog.
+     * Local databases don't change, so the catalog is loaded once.
+     *
+     * @return The database catalog.
+     */
+    @Override
+    public DatabaseCatalog getCatalog() {
+        return catalog;
+    }
+
+    /** @return The matching strategies supported locally.
+     * @throws DictConnectionException If the dictionary is closed.
+     */
+    @Override
+    public Set<MatchingStrategy> getStrategyList() throws DictConnectionException {
+        checkOpen();
+        return STRATEGIES;
+    }
+
+    private Collection<DictdDatabase> select(Database database) throws DictConnectionException {
+        checkOpen();
+        String name = database.getName();
+        if ("*".equals(name) || "!".equals(name)) {
+            return databases.values();
+        }
+        DictdDatabase source = databases.get(name);
+        if (source == null) {
+            throw new DictConnectionException("invalid database: " + name);
+        }
+        return Collections.singletonList(source);
+    }
+
+    private static String read(DictdDatabase source, DictdDatabase.Entry entry) throws DictConnectionException {
+        try {
+            String text = source.read(entry);
+            //the text of an entry ends with a newline, which would otherwise become an extra empty line
+            return text.endsWith("\n") ? text.substring(0, text.length() - 1) : text;
+        }
+        catch (IOException e) {
+            throw new DictConnectionException(e);
+        }
+    }
+
+    private void checkOpen() throws DictConnectionException {
+        if (closed) {
+            throw new DictConnectionException("dictionary is closed");
+        }
+    }
+
+    private static boolean withinOneEdit(String a, String b) {
+        if (Math.abs(a.length() - b.length()) > 1) {
+            return false;
+        }
+        int i = 0;
+        int j = 0;
+        int edits = 0;
+        while (i < a.length() && j < b.length()) {
+            if (a.charAt(i) == b.charAt(j)) {
+                i++;
+                j++;
+                continue;
+            }
+            if (++edits > 1) {
+                return false;
+            }
+            //substitution, deletion or insertion
+            if (a.length() == b.length()) {
+                i++;
+                j++;
+            }
+            else if (a.length() > b.length()) {
+                i++;
+            }
+            else {
+                j++;
+            }
+        }
+        return edits + (a.length() - i) + (b.length() - j) <= 1;
+    }
+}
@@ -0,0 +1,73 @@
+package ca.ubc.cs317.dict.net;
+
+import java.util.Objects;
+
+/** Identifies a DEFINE or MATCH request by its command, database, strategy and word. Two requests with equal keys get
+ * the same reply from the server, so keys are used to share replies between callers.
+ */
+final class LookupKey {
+
+    static final String DEFINE = "DEFINE";
+    static final String MATCH = "MATCH";
+
+    private final String command;
+    private final String database;
+    private final String strategy;
+    private final String word;
+    private final int hash;
+
+    private LookupKey(String command, String database, String strategy, String word) {
+        this.command = command;
+        this.database = database;
+        this.strategy = strategy;
+        this.word = word;
+        this.hash = Objects.hash(command, database, strategy, word);
+    }
+
+    static LookupKey define(String database, String word) {
+        return new LookupKey(DEFINE, database, "", word);
+    }
+
+    static LookupKey match(String database, String strategy, String word) {
+        return new LookupKey(MATCH, database, strategy, word);
+    }
+
+    String getCommand() {
+        return command;
+    }
+
+    String getDatabase() {
+        return database;
+    }
+
+    String getStrategy() {
+        return strategy;
+    }
+
+    String getWord() {
+        return word;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LookupKey)) {
+            return false;
+        }
+        LookupKey other = (LookupKey) o;
+        return hash == other.hash && command.equals(other.command) && database.equals(other.database)
+                && strategy.equals(other.strategy) && word.equals(other.word);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return command + " " + database + (strategy.isEmpty() ? "" : " " + strategy) + " " + word;
+    }
+}
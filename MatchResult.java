@@ -0,0 +1,165 @@
+package ca.ubc.cs317.dict.net;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/** Result of a MATCH command that keeps the database of every match, so a single "MATCH * strategy word" can replace
+ * one MATCH per database. Matches are stored compactly: database names are interned into a small table and referenced
+ * by index, and all matched words share a single string table (one String plus offsets) instead of one String each.
+ * Instances are immutable.
+ */
+public final class MatchResult {
+
+    private static final MatchResult EMPTY = new MatchResult(new String[0], new int[0], "", new int[1]);
+
+    private final String[] databases;
+    private final int[] databaseIndex;
+    private final String words;
+    //word i is words.substring(offsets[i], offsets[i + 1])
+    private final int[] offsets;
+
+    private MatchResult(String[] databases, int[] databaseIndex, String words, int[] offsets) {
+        this.databases = databases;
+        this.databaseIndex = databaseIndex;
+        this.words = words;
+        this.offsets = offsets;
+    }
+
+    /** @return A result without any match.
+     */
+    public static MatchResult empty() {
+        return EMPTY;
+    }
+
+    /** @return The number of (database, word) matches.
+     */
+    public int size() {
+        return databaseIndex.length;
+    }
+
+    /** @return True if there is no match.
+     */
+    public boolean isEmpty() {
+        return databaseIndex.length == 0;
+    }
+
+    /** @param index Index of the match, in the order returned by the server.
+     * @return Name of the database the match comes from.
+     */
+    public String getDatabase(int index) {
+        return databases[databaseIndex[index]];
+    }
+
+    /** @param index Index of the match, in the order returned by the server.
+     * @return The matched word.
+     */
+    public String getWord(int index) {
+        return words.substring(offsets[index], offsets[index + 1]);
+    }
+
+    /** @return Names of the databases with at least one match, in the order they first appear.
+     */
+    public List<String> getDatabases() {
+        return Collections.unmodifiableList(Arrays.asList(databases));
+    }
+
+    /** @return Every matched word without duplicates, i.e. what getMatchList returns.
+     */
+    public Set<String> getWords() {
+        Set<String> set = new LinkedHashSet<>();
+        for (int i = 0; i < size(); i++) {
+            set.add(getWord(i));
+        }
+        return set;
+    }
+
+    /** @param database Name of a database.
+     * @return The words matched in that database, empty if there are none.
+     */
+    public Set<String> getWords(String database) {
+        Set<String> set = new LinkedHashSet<>();
+        for (int d = 0; d < databases.length; d++) {
+            if (databases[d].equals(database)) {
+                for (int i = 0; i < size(); i++) {
+                    if (databaseIndex[i] == d) {
+                        set.add(getWord(i));
+                    }
+                }
+            }
+        }
+        return set;
+    }
+
+    /** @return The matched words grouped by database, in the order the databases first appear.
+     */
+    public Map<String, Set<String>> getWordsByDatabase() {
+        Map<String, Set<String>> map = new LinkedHashMap<>();
+        for (String database : databases) {
+            map.put(database, new LinkedHashSet<>());
+        }
+        for (int i = 0; i < size(); i++) {
+            map.get(getDatabase(i)).add(getWord(i));
+        }
+        return map;
+    }
+
+    /** Hands over every match in the order returned by the server.
+     *
+     * @param consumer Receives the database name and the word of each match.
+     */
+    public void forEach(BiConsumer<String, String> consumer) {
+        for (int i = 0; i < size(); i++) {
+            consumer.accept(getDatabase(i), getWord(i));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getWordsByDatabase().toString();
+    }
+
+    /** Collects matches as they are read from a MATCH reply.
+     */
+    static final class Builder implements BiConsumer<String, String> {
+
+        private final List<String> databases = new ArrayList<>(4);
+        private final StringBuilder words = new StringBuilder();
+        private int[] databaseIndex = new int[16];
+        private int[] offsets = new int[17];
+        private int size;
+
+        @Override
+        public void accept(String database, String word) {
+            add(database, word);
+        }
+
+        void add(String database, String word) {
+            if (size == databaseIndex.length) {
+                databaseIndex = Arrays.copyOf(databaseIndex, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2 + 1);
+            }
+            databaseIndex[size] = intern(database);
+            words.append(word);
+            offsets[++size] = words.length();
+        }
+
+        MatchResult build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            return new MatchResult(databases.toArray(new String[0]), Arrays.copyOf(databaseIndex, size),
+                    words.toString(), Arrays.copyOf(offsets, size + 1));
+        }
+
+        //a reply rarely spans more than a handful of databases, a linear scan beats hashing
+        private int intern(String database) {
+            for (int i = databases.size() - 1; i >= 0; i--) {
+                if (databases.get(i).equals(database)) {
+                    return i;
+                }
+            }
+            databases.add(database);
+            return databases.size() - 1;
+        }
+    }
+}
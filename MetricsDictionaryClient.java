@@ -0,0 +1,83 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.exception.DictConnectionException;
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+
+import java.util.Collection;
+import java.util.Set;
+
+/** Decorates a DictionaryClient to report the latency, result count and outcome of every operation as seen by the
+ * caller, i.e. including the time spent in the layers below (waiting for a pooled connection, retries, cache hits).
+ * Byte and line counts are only known to a DictionaryConnection and are reported as -1. To see both views, give this
+ * decorator and the connections different DictMetrics instances.
+ */
+public class MetricsDictionaryClient extends ForwardingDictionaryClient {
+
+    private final DictMetrics metrics;
+
+    /** @param client  The client whose operations are measured.
+     * @param metrics Receives one sample per operation.
+     */
+    public MetricsDictionaryClient(DictionaryClient client, DictMetrics metrics) {
+        super(client);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Collection<Definition> getDefinitions(String word, Database database) throws DictConnectionException {
+        long start = System.nanoTime();
+        Collection<Definition> definitions = null;
+        try {
+            definitions = delegate.getDefinitions(word, database);
+            return definitions;
+        }
+        finally {
+            record(DictMetrics.Command.DEFINE, start, definitions == null ? -1 : definitions.size());
+        }
+    }
+
+    @Override
+    public Set<String> getMatchList(String word, MatchingStrategy strategy, Database database) throws DictConnectionException {
+        long start = System.nanoTime();
+        Set<String> matches = null;
+        try {
+            matches = delegate.getMatchList(word, strategy, database);
+            return matches;
+        }
+        finally {
+            record(DictMetrics.Command.MATCH, start, matches == null ? -1 : matches.size());
+        }
+    }
+
+    @Override
+    public Collection<Database> getDatabaseList() throws DictConnectionException {
+        long start = System.nanoTime();
+        Collection<Database> databases = null;
+        try {
+            databases = delegate.getDatabaseList();
+            return databases;
+        }
+        finally {
+            record(DictMetrics.Command.SHOW_DB, start, databases == null ? -1 : databases.size());
+        }
+    }
+
+    @Override
+    public Set<MatchingStrategy> getStrategyList() throws DictConnectionException {
+        long start = System.nanoTime();
+        Set<MatchingStrategy> strategies = null;
+        try {
+            strategies = delegate.getStrategyList();
+            return strategies;
+        }
+        finally {
+            record(DictMetrics.Command.SHOW_STRAT, start, strategies == null ? -1 : strategies.size());
+        }
+    }
+
+    private void record(DictMetrics.Command command, long start, int results) {
+        metrics.commandCompleted(command, -1, System.nanoTime() - start, -1, -1, -1, Math.max(results, 0), results < 0);
+    }
+}
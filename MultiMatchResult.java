@@ -0,0 +1,106 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.exception.DictConnectionException;
+
+import java.util.*;
+
+/** Matches for one word under several strategies and databases, grouped by (database, strategy). The database is the
+ * one each match was reported in by the server, so matches obtained through '*' or '!' are attributed to the database
+ * they actually come from. A (database, strategy) pair rejected by the server, e.g. with a strategy it doesn't support,
+ * is recorded as a failure without affecting the other pairs.
+ */
+public class MultiMatchResult {
+
+    private final String word;
+    private final Map<String, Map<String, Set<String>>> matches = new LinkedHashMap<>();
+    private final Map<String, Map<String, DictConnectionException>> failures = new LinkedHashMap<>();
+
+    MultiMatchResult(String word) {
+        this.word = word;
+    }
+
+    void add(String database, String strategy, String match) {
+        matches.computeIfAbsent(database, d -> new LinkedHashMap<>())
+                .computeIfAbsent(strategy, s -> new LinkedHashSet<>())
+                .add(match);
+    }
+
+    void fail(String database, String strategy, DictConnectionException failure) {
+        failures.computeIfAbsent(database, d -> new LinkedHashMap<>()).put(strategy, failure);
+    }
+
+    /** @return The word pattern that was matched.
+     */
+    public String getWord() {
+        return word;
+    }
+
+    /** @return Names of the databases with at least one match, in the order the matches were received.
+     */
+    public Set<String> getDatabases() {
+        return Collections.unmodifiableSet(matches.keySet());
+    }
+
+    /** @param database Name of a database.
+     * @return Names of the strategies with at least one match in that database.
+     */
+    public Set<String> getStrategies(String database) {
+        Map<String, Set<String>> byStrategy = matches.get(database);
+        return byStrategy == null ? Collections.<String>emptySet() : Collections.unmodifiableSet(byStrategy.keySet());
+    }
+
+    /** @param database Name of a database.
+     * @param strategy Name of a strategy.
+     * @return The words matched in that database with that strategy, empty if there are none.
+     */
+    public Set<String> getMatches(String database, String strategy) {
+        Map<String, Set<String>> byStrategy = matches.get(database);
+        Set<String> words = byStrategy == null ? null : byStrategy.get(strategy);
+        return words == null ? Collections.<String>emptySet() : Collections.unmodifiableSet(words);
+    }
+
+    /** @param strategy Name of a strategy.
+     * @return The words matched with that strategy in any database, without duplicates.
+     */
+    public Set<String> getMatches(String strategy) {
+        Set<String> words = new LinkedHashSet<>();
+        for (Map<String, Set<String>> byStrategy : matches.values()) {
+            words.addAll(byStrategy.getOrDefault(strategy, Collections.<String>emptySet()));
+        }
+        return words;
+    }
+
+    /** @return Every matched word, in any database and with any strategy, without duplicates.
+     */
+    public Set<String> getAllMatches() {
+        Set<String> words = new LinkedHashSet<>();
+        for (Map<String, Set<String>> byStrategy : matches.values()) {
+            for (Set<String> strategyWords : byStrategy.values()) {
+                words.addAll(strategyWords);
+            }
+        }
+        return words;
+    }
+
+    /** @return True if there is no match at all.
+     */
+    public boolean isEmpty() {
+        return matches.isEmpty();
+    }
+
+    /** @return True if the lookup failed for at least one (database, strategy) pair.
+     */
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+
+    /** @param database Name of a database, as it was requested (possibly '*' or '!').
+     * @param strategy Name of a strategy.
+     * @return Why the server rejected the lookup for that pair (e.g. 550 invalid database or 551 invalid strategy), or
+     * null if it didn't.
+     */
+    public DictConnectionException getFailure(String database, String strategy) {
+        Map<String, DictConnectionException> byStrategy = failures.get(database);
+        return byStrategy == null ? null : byStrategy.get(strategy);
+    }
+}
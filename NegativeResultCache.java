@@ -0,0 +1,148 @@
+package ca.ubc.cs317.dict.net;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Remembers DEFINE and MATCH requests the server answered with 552 (no match), so repeated misses such as typos can be
+ * answered locally. Recent misses are kept exactly in a bounded LRU/TTL cache. Optionally, a Bloom filter per database
+ * also remembers misses beyond the capacity of that cache, in constant space, at the cost of a configurable
+ * false-positive rate (a word that exists being reported as missing).
+ *
+ * Bloom filters can't forget single entries, so each one is discarded once it is older than the time-to-live or has
+ * received more misses than it was sized for. Everything is discarded when the database catalog changes.
+ */
+public class NegativeResultCache implements DatabaseCatalog.Listener {
+
+    private final ResultCache<LookupKey, Boolean> misses;
+    private final long ttlNanos;
+    private final ConcurrentMap<String, Generation> filters = new ConcurrentHashMap<>();
+    private volatile long bloomExpectedInsertions;
+    private volatile double bloomFalsePositiveRate;
+    private final LongAdder exactHits = new LongAdder();
+    private final LongAdder bloomHits = new LongAdder();
+
+    /** A Bloom filter and the time it was created.
+     */
+    private static final class Generation {
+
+        private final BloomFilter filter;
+        private final long createdAt;
+
+        private Generation(BloomFilter filter, long createdAt) {
+            this.filter = filter;
+            this.createdAt = createdAt;
+        }
+    }
+
+    /** Creates a negative cache without Bloom filters.
+     *
+     * @param maxEntries Maximum number of misses remembered exactly.
+     * @param ttl        Time after which a miss is forgotten, so words added to the server eventually become visible.
+     * @param unit       Unit of the time-to-live.
+     */
+    public NegativeResultCache(int maxEntries, long ttl, TimeUnit unit) {
+        this.misses = new ResultCache<>(maxEntries, ttl, unit);
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+
+    /** Enables a Bloom filter per database, in addition to the exact cache.
+     *
+     * @param expectedInsertions Number of misses each filter is sized for, before it is discarded.
+     * @param falsePositiveRate  Probability that a word which was never missing is reported as missing.
+     * @return This cache.
+     */
+    public NegativeResultCache enableBloomFilter(long expectedInsertions, double falsePositiveRate) {
+        //validate eagerly rather than on the first miss
+        new BloomFilter(expectedInsertions, falsePositiveRate);
+        this.bloomExpectedInsertions = expectedInsertions;
+        this.bloomFalsePositiveRate = falsePositiveRate;
+        filters.clear();
+        return this;
+    }
+
+    /** Checks whether a request is known to have no match.
+     *
+     * @param key The request.
+     * @return True if the server answered this request with 552 recently.
+     */
+    boolean isKnownMissing(LookupKey key) {
+        if (misses.get(key) != null) {
+            exactHits.increment();
+            return true;
+        }
+        Generation generation = filters.get(key.getDatabase());
+        if (generation != null && System.nanoTime() - generation.createdAt < ttlNanos
+                && generation.filter.mightContain(filterKey(key))) {
+            bloomHits.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /** Records that the server answered a request with 552.
+     *
+     * @param key The request.
+     */
+    void recordMissing(LookupKey key) {
+        misses.put(key, Boolean.TRUE);
+        if (bloomExpectedInsertions > 0) {
+            filterFor(key.getDatabase()).add(filterKey(key));
+        }
+    }
+
+    /** Forgets all misses.
+     */
+    public void invalidateAll() {
+        misses.invalidateAll();
+        filters.clear();
+    }
+
+    /** Forgets all misses as soon as the list of databases changes, since a database may have been added, replaced or
+     * reloaded with new words.
+     */
+    @Override
+    public void catalogChanged(DatabaseCatalog.Snapshot snapshot) {
+        invalidateAll();
+    }
+
+    /** @return Number of requests answered from the exact cache.
+     */
+    public long getExactHits() {
+        return exactHits.sum();
+    }
+
+    /** @return Number of requests answered from a Bloom filter.
+     */
+    public long getBloomHits() {
+        return bloomHits.sum();
+    }
+
+    /** @return Statistics of the exact cache.
+     */
+    public ResultCache.Statistics getStatistics() {
+        return misses.getStatistics();
+    }
+
+    private BloomFilter filterFor(String database) {
+        long now = System.nanoTime();
+        Generation generation = filters.get(database);
+        if (generation == null || now - generation.createdAt >= ttlNanos || generation.filter.isSaturated()) {
+            Generation fresh = new Generation(new BloomFilter(bloomExpectedInsertions, bloomFalsePositiveRate), now);
+            //another thread may have replaced it first, keep whichever got in
+            if (generation == null) {
+                generation = filters.putIfAbsent(database, fresh);
+                generation = generation == null ? fresh : generation;
+            }
+            else {
+                generation = filters.replace(database, generation, fresh) ? fresh : filters.getOrDefault(database, fresh);
+            }
+        }
+        return generation.filter;
+    }
+
+    private static String filterKey(LookupKey key) {
+        return key.getCommand() + ' ' + key.getStrategy() + ' ' + key.getWord();
+    }
+}
@@ -0,0 +1,313 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.exception.DictConnectionException;
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/** A non-blocking connection with a DICT server, driven by one of the I/O threads of a NioDictionaryEngine. Commands
+ * can be issued from any thread; they are written in order and their replies are matched to the returned futures in
+ * FIFO order, so many commands can be outstanding on the same connection.
+ *
+ * Futures are completed on the I/O thread. Callers doing blocking or expensive work in dependent stages should use the
+ * async variants of the CompletableFuture methods.
+ */
+public class NioDictionaryConnection {
+
+    private final NioDictionaryEngine.IoLoop loop;
+    private final SocketChannel channel;
+    private final String host;
+    private final int port;
+    private final int readTimeoutMillis;
+    private final DatabaseCatalog catalog = new DatabaseCatalog(this::loadDatabases);
+    private final ReplyDecoder.StatusReply banner = new ReplyDecoder.StatusReply(220);
+
+    private final Queue<ReplyDecoder<?>> pending = new ConcurrentLinkedQueue<>();
+    private final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<>();
+
+    //only touched by the I/O thread
+    private SelectionKey key;
+    private byte[] line = new byte[256];
+    private int lineLength;
+
+    private volatile boolean closed;
+
+    NioDictionaryConnection(NioDictionaryEngine.IoLoop loop, SocketChannel channel, String host, int port,
+                            int readTimeoutMillis) {
+        this.loop = loop;
+        this.channel = channel;
+        this.host = host;
+        this.port = port;
+        this.readTimeoutMillis = readTimeoutMillis;
+        pending.add(banner);
+    }
+
+    /** @return Name of the host this connection was opened to.
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /** @return Port number this connection was opened to.
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /** @return True if the connection was closed, either explicitly or because of an error.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /** Returns the database catalog of this connection. It is updated every time a SHOW DB reply is received; until then,
+     * databases are described using the 151 lines of DEFINE replies.
+     *
+     * @return The database catalog used to resolve database names returned by the server.
+     */
+    public DatabaseCatalog getCatalog() {
+        return catalog;
+    }
+
+    /** Requests all definitions for a specific word.
+     *
+     * @param word     The word whose definition is to be retrieved.
+     * @param database The database to be used to retrieve the definition ('*' and '!' are allowed).
+     * @return A future completed with the definitions returned by the server (empty if there are none).
+     */
+    public CompletableFuture<Collection<Definition>> define(String word, Database database) {
+        return send(DictionaryConnection.defineCommand(word, database), new ReplyDecoder.DefinitionReply(word, catalog));
+    }
+
+    /** Requests a list of matches for a specific word pattern.
+     *
+     * @param word     The word pattern to be matched.
+     * @param strategy The strategy to be used to retrieve the list of matches.
+     * @param database The database to be used to retrieve the matches ('*' and '!' are allowed).
+     * @return A future completed with the word matches returned by the server (empty if there are none).
+     */
+    public CompletableFuture<Set<String>> match(String word, MatchingStrategy strategy, Database database) {
+        ReplyDecoder.ListReply<String> reply = new ReplyDecoder.ListReply<>(152, 552, atoms -> atoms[1]);
+        return send(DictionaryConnection.matchCommand(word, strategy, database), reply)
+                .thenApply(LinkedHashSet::new);
+    }
+
+    /** Requests the list of databases supported by the server, and updates the catalog with it.
+     *
+     * @return A future completed with the databases supported by the server.
+     */
+    public CompletableFuture<Collection<Database>> showDatabases() {
+        ReplyDecoder.ListReply<Database> reply = new ReplyDecoder.ListReply<>(110, 554, atoms -> new Database(atoms[0], atoms[1]));
+        return send("SHOW DB", reply).thenApply(databases -> catalog.update(databases).getDatabases());
+    }
+
+    /** Requests the list of matching strategies supported by the server.
+     *
+     * @return A future completed with the strategies supported by the server.
+     */
+    public CompletableFuture<Set<MatchingStrategy>> showStrategies() {
+        ReplyDecoder.ListReply<MatchingStrategy> reply = new ReplyDecoder.ListReply<>(111, 555, atoms -> new MatchingStrategy(atoms[0], atoms[1]));
+        return send("SHOW STRAT", reply).thenApply(LinkedHashSet::new);
+    }
+
+    /** Sends the final QUIT message and closes the connection once the server has answered it. Any error is ignored.
+     *
+     * @return A future completed once the connection is closed.
+     */
+    public CompletableFuture<Void> close() {
+        if (closed) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return send("QUIT", new ReplyDecoder.StatusReply(221))
+                .handle((details, e) -> null)
+                .thenRun(() -> loop.execute(() -> fail(new DictConnectionException("connection closed"))));
+    }
+
+    /** Completed once the 220 banner has been received.
+     */
+    CompletableFuture<NioDictionaryConnection> ready() {
+        return banner.result().thenApply(details -> this);
+    }
+
+    private <T> CompletableFuture<T> send(String command, ReplyDecoder<T> decoder) {
+        ByteBuffer buffer = ByteBuffer.wrap((command + "\r\n").getBytes(StandardCharsets.UTF_8));
+        //the reply queue and the write queue must stay in the same order
+        synchronized (this) {
+            if (closed) {
+                decoder.fail(new DictConnectionException("connection closed"));
+                return decoder.result();
+            }
+            pending.add(decoder);
+            outbound.add(buffer);
+        }
+        loop.execute(this::updateInterest);
+        return decoder.result();
+    }
+
+    /** Loads the catalog, waiting at most the read timeout or until the deadline of the calling thread. A reply that
+     * arrives later still updates the catalog, and doesn't desynchronize the connection since replies are matched in
+     * order.
+     */
+    private Collection<Database> loadDatabases() throws DictConnectionException {
+        if (loop.inLoop()) {
+            throw new DictConnectionException("the database list can't be loaded from the I/O thread");
+        }
+        Deadline deadline = Deadline.current();
+        deadline.check();
+        long timeout = Math.min(readTimeoutMillis == 0 ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(readTimeoutMillis),
+                deadline.remainingNanos());
+        try {
+            CompletableFuture<Collection<Database>> reply = showDatabases();
+            return timeout == Long.MAX_VALUE ? reply.get() : reply.get(timeout, TimeUnit.NANOSECONDS);
+        }
+        catch (TimeoutException e) {
+            throw new DictTimeoutException("timed out waiting for the database list from " + host);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DictConnectionException(e);
+        }
+        catch (ExecutionException e) {
+            throw e.getCause() instanceof DictConnectionException
+                    ? (DictConnectionException) e.getCause() : new DictConnectionException(e.getCause());
+        }
+    }
+
+    // ---- everything below runs on the I/O thread ----
+
+    void registered(SelectionKey key) {
+        this.key = key;
+    }
+
+    /** Closes the connection if the banner still hasn't been received when the connect timeout expires.
+     */
+    void connectTimedOut() {
+        if (!banner.result().isDone()) {
+            fail(new DictTimeoutException("timed out connecting to " + host + ":" + port));
+        }
+    }
+
+    void onConnectable() {
+        try {
+            if (channel.finishConnect()) {
+                updateInterest();
+            }
+        }
+        catch (IOException e) {
+            fail(new DictConnectionException(e));
+        }
+    }
+
+    void onReadable(ByteBuffer buffer) {
+        try {
+            buffer.clear();
+            int read = channel.read(buffer);
+            if (read < 0) {
+                fail(new DictConnectionException("connection closed by server"));
+                return;
+            }
+            buffer.flip();
+            parse(buffer);
+        }
+        catch (IOException e) {
+            fail(new DictConnectionException(e));
+        }
+        catch (DictConnectionException e) {
+            fail(e);
+        }
+        //a reply the decoders choke on, the rest of the stream can't be trusted either
+        catch (RuntimeException e) {
+            fail(new DictConnectionException(e));
+        }
+    }
+
+    void onWritable() {
+        try {
+            ByteBuffer buffer;
+            while ((buffer = outbound.peek()) != null) {
+                channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    //socket buffer is full, wait for the next OP_WRITE
+                    return;
+                }
+                outbound.poll();
+            }
+            updateInterest();
+        }
+        catch (IOException e) {
+            fail(new DictConnectionException(e));
+        }
+    }
+
+    void updateInterest() {
+        if (key == null || !key.isValid() || channel.isConnectionPending()) {
+            return;
+        }
+        key.interestOps(outbound.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    /** Splits the received bytes into lines and hands them to the decoder of the oldest pending command. Partial lines
+     * are kept until the rest of the line arrives.
+     */
+    private void parse(ByteBuffer buffer) throws DictConnectionException {
+        byte[] bytes = buffer.array();
+        int end = buffer.limit();
+        for (int i = buffer.position(); i < end; i++) {
+            byte b = bytes[i];
+            if (b == '\n') {
+                int length = lineLength > 0 && line[lineLength - 1] == '\r' ? lineLength - 1 : lineLength;
+                String text = new String(line, 0, length, StandardCharsets.UTF_8);
+                lineLength = 0;
+                dispatch(text);
+            }
+            else {
+                if (lineLength == line.length) {
+                    line = Arrays.copyOf(line, line.length * 2);
+                }
+                line[lineLength++] = b;
+            }
+        }
+    }
+
+    private void dispatch(String text) throws DictConnectionException {
+        ReplyDecoder<?> decoder = pending.peek();
+        if (decoder == null) {
+            throw new DictConnectionException("unexpected line from server: " + text);
+        }
+        if (decoder.onLine(text)) {
+            pending.poll();
+        }
+    }
+
+    /** Closes the channel and fails every command still waiting for a reply.
+     */
+    void fail(DictConnectionException cause) {
+        synchronized (this) {
+            closed = true;
+        }
+        try {
+            channel.close();
+        }
+        //exceptions(ignored)
+        catch (IOException e) {
+            System.err.println("exception ignored");
+        }
+        ReplyDecoder<?> decoder;
+        while ((decoder = pending.poll()) != null) {
+            decoder.fail(cause);
+        }
+        outbound.clear();
+    }
+}
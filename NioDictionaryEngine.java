@@ -0,0 +1,220 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.exception.DictConnectionException;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Non-blocking client engine for the DICT protocol. A small, fixed number of I/O threads, each running its own
+ * Selector, drive any number of NioDictionaryConnection instances, so thousands of concurrent lookups don't need
+ * thousands of threads. Replies are parsed incrementally as bytes arrive and returned through CompletableFuture.
+ */
+public class NioDictionaryEngine {
+
+    private static final int DEFAULT_PORT = 2628;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final IoLoop[] loops;
+    private final ConnectionOptions options;
+    private final AtomicInteger next = new AtomicInteger();
+
+    /** Creates an engine with one I/O thread per available processor.
+     *
+     * @throws IOException If a selector could not be opened.
+     */
+    public NioDictionaryEngine() throws IOException {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /** Creates an engine with the given number of I/O threads.
+     *
+     * @param ioThreads Number of I/O threads (and selectors) used to drive connections.
+     * @throws IOException If a selector could not be opened.
+     */
+    public NioDictionaryEngine(int ioThreads) throws IOException {
+        this(ioThreads, new ConnectionOptions());
+    }
+
+    /** Creates an engine with the given number of I/O threads and connection settings. Only the timeouts of the
+     * settings are used: the connect timeout bounds connecting and waiting for the banner, and the read timeout bounds
+     * loading the database catalog.
+     *
+     * @param ioThreads Number of I/O threads (and selectors) used to drive connections.
+     * @param options   Settings of the connections, read when each connection is opened.
+     * @throws IOException If a selector could not be opened.
+     */
+    public NioDictionaryEngine(int ioThreads, ConnectionOptions options) throws IOException {
+        this.options = Objects.requireNonNull(options);
+        if (ioThreads < 1) {
+            throw new IllegalArgumentException("at least one I/O thread is needed");
+        }
+        loops = new IoLoop[ioThreads];
+        for (int i = 0; i < ioThreads; i++) {
+            loops[i] = new IoLoop(i);
+        }
+    }
+
+    /** Opens a new connection using the default DICT port.
+     *
+     * @param host Name of the host where the DICT server is running
+     * @return A future completed with the connection once the 220 banner has been received.
+     */
+    public CompletableFuture<NioDictionaryConnection> connect(String host) {
+        return connect(host, DEFAULT_PORT);
+    }
+
+    /** Opens a new connection and waits (asynchronously) for the 220 banner. Connections are spread over the I/O
+     * threads in round-robin order. The connection is closed and the future fails with a DictTimeoutException if the
+     * banner isn't received within the connect timeout, or before the deadline of the calling thread
+     * (Deadline.current).
+     *
+     * @param host Name of the host where the DICT server is running
+     * @param port Port number used by the DICT server
+     * @return A future completed with the connection once the 220 banner has been received.
+     */
+    public CompletableFuture<NioDictionaryConnection> connect(String host, int port) {
+        IoLoop loop = loops[Math.floorMod(next.getAndIncrement(), loops.length)];
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.connect(new InetSocketAddress(host, port));
+        }
+        catch (IOException | RuntimeException e) {
+            CompletableFuture<NioDictionaryConnection> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new DictConnectionException(e));
+            return failed;
+        }
+
+        NioDictionaryConnection connection = new NioDictionaryConnection(loop, channel, host, port,
+                options.getReadTimeoutMillis());
+        loop.execute(() -> loop.register(channel, connection));
+        int timeout = DictionaryConnection.connectTimeout(options.getConnectTimeoutMillis(), Deadline.current());
+        if (timeout > 0) {
+            CompletableFuture.delayedExecutor(timeout, TimeUnit.MILLISECONDS, loop::execute)
+                    .execute(connection::connectTimedOut);
+        }
+        return connection.ready().whenComplete((c, e) -> {
+            //a server that doesn't greet us properly is not usable
+            if (e != null) {
+                loop.execute(() -> connection.fail(new DictConnectionException("no 220 banner from " + host)));
+            }
+        });
+    }
+
+    /** Stops the I/O threads and closes all connections without sending QUIT.
+     */
+    public void close() {
+        for (IoLoop loop : loops) {
+            loop.shutdown();
+        }
+    }
+
+    /** One I/O thread with its own selector.
+     */
+    static final class IoLoop implements Runnable {
+
+        private final Selector selector;
+        private final Thread thread;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        //shared by all connections of this loop, only one of them reads at a time
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private volatile boolean running = true;
+
+        private IoLoop(int index) throws IOException {
+            selector = Selector.open();
+            thread = new Thread(this, "dict-nio-" + index);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /** Runs a task on this I/O thread.
+         */
+        void execute(Runnable task) {
+            tasks.add(task);
+            if (!inLoop()) {
+                selector.wakeup();
+            }
+        }
+
+        boolean inLoop() {
+            return Thread.currentThread() == thread;
+        }
+
+        private void register(SocketChannel channel, NioDictionaryConnection connection) {
+            try {
+                int ops = channel.isConnectionPending() ? SelectionKey.OP_CONNECT : SelectionKey.OP_READ;
+                connection.registered(channel.register(selector, ops, connection));
+                if (!channel.isConnectionPending()) {
+                    connection.updateInterest();
+                }
+            }
+            catch (IOException e) {
+                connection.fail(new DictConnectionException(e));
+            }
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select();
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        task.run();
+                    }
+                    for (SelectionKey key : selector.selectedKeys()) {
+                        handle(key);
+                    }
+                    selector.selectedKeys().clear();
+                }
+                //keep the loop alive, a single connection failing must not stop the others
+                catch (IOException | RuntimeException e) {
+                    System.err.println("unexpected error in DICT I/O loop: " + e);
+                }
+            }
+            for (SelectionKey key : selector.keys()) {
+                ((NioDictionaryConnection) key.attachment()).fail(new DictConnectionException("engine closed"));
+            }
+            try {
+                selector.close();
+            }
+            //exceptions(ignored)
+            catch (IOException e) {
+                System.err.println("exception ignored");
+            }
+        }
+
+        private void handle(SelectionKey key) {
+            NioDictionaryConnection connection = (NioDictionaryConnection) key.attachment();
+            if (!key.isValid()) {
+                return;
+            }
+            if (key.isConnectable()) {
+                connection.onConnectable();
+                return;
+            }
+            if (key.isReadable()) {
+                connection.onReadable(readBuffer);
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.onWritable();
+            }
+        }
+
+        private void shutdown() {
+            running = false;
+            selector.wakeup();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.exception.DictConnectionException;
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/** A DictionaryClient for one DICT server that runs each operation on a connection borrowed from a pool, so it can be
+ * shared by any number of threads without them serializing on a single connection. A connection that fails is
+ * invalidated by the pool and the next operation gets a fresh one.
+ */
+public class PooledDictionaryClient implements DictionaryClient {
+
+    private static final int DEFAULT_PORT = 2628;
+
+    private final DictionaryConnectionPool pool;
+    private final String host;
+    private final int port;
+    private final DatabaseCatalog catalog;
+    private volatile int defineAllParallelism = 1;
+
+    /** @param pool Pool the connections are borrowed from.
+     * @param host Name of the host where the DICT server is running
+     */
+    public PooledDictionaryClient(DictionaryConnectionPool pool, String host) {
+        this(pool, host, DEFAULT_PORT);
+    }
+
+    /** @param pool Pool the connections are borrowed from.
+     * @param host Name of the host where the DICT server is running
+     * @param port Port number used by the DICT server
+     */
+    public PooledDictionaryClient(DictionaryConnectionPool pool, String host, int port) {
+        this.pool = pool;
+        this.host = host;
+        this.port = port;
+        this.catalog = new DatabaseCatalog(() -> pool.execute(host, port, DictionaryConnection::getDatabaseList));
+    }
+
+    /** @return Name of the host where the DICT server is running
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /** @return Port number used by the DICT server
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /** Sets how many connections a DEFINE on '*' is spread over. The server answers DEFINE * by searching its
+     * databases one after the other; with more than one connection, '*' is instead expanded into one DEFINE per
+     * database of the catalog (loaded once, then cached), which run in parallel, and the definitions are put back in
+     * catalog order. Each connection takes the next database as soon as it is done with the previous one. This mostly
+     * pays off on servers with many databases. Defaults to 1, i.e. DEFINE * is sent as is.
+     *
+     * @param connections Number of connections, at least 1.
+     * @return This object.
+     */
+    public PooledDictionaryClient setDefineAllParallelism(int connections) {
+        if (connections < 1) {
+            throw new IllegalArgumentException("at least one connection is needed");
+        }
+        this.defineAllParallelism = connections;
+        return this;
+    }
+
+    @Override
+    public Collection<Definition> getDefinitions(String word, Database database) throws DictConnectionException {
+        if (defineAllParallelism > 1 && "*".equals(database.getName())) {
+            return defineAll(word);
+        }
+        return pool.execute(host, port, connection -> connection.getDefinitions(word, database));
+    }
+
+    @Override
+    public Set<String> getMatchList(String word, MatchingStrategy strategy, Database database) throws DictConnectionException {
+        return pool.execute(host, port, connection -> connection.getMatchList(word, strategy, database));
+    }
+
+    /** Retrieves the list of databases and refreshes the catalog of this client with it.
+     */
+    @Override
+    public Collection<Database> getDatabaseList() throws DictConnectionException {
+        return catalog.refresh().getDatabases();
+    }
+
+    @Override
+    public Set<MatchingStrategy> getStrategyList() throws DictConnectionException {
+        return pool.execute(host, port, DictionaryConnection::getStrategyList);
+    }
+
+    @Override
+    public DatabaseCatalog getCatalog() {
+        return catalog;
+    }
+
+    /** Emulates DEFINE * with one DEFINE per database, sent in parallel over several pooled connections.
+     */
+    private Collection<Definition> defineAll(String word) throws DictConnectionException {
+        List<Database> databases = new ArrayList<>();
+        for (Database database : catalog.ensureLoaded().getDatabases()) {
+            //dictd doesn't search '*' past this database
+            if ("--exit--".equals(database.getName())) {
+                break;
+            }
+            databases.add(database);
+        }
+
+        AtomicReferenceArray<Collection<Definition>> results = new AtomicReferenceArray<>(databases.size());
+        AtomicInteger cursor = new AtomicInteger();
+        Deadline deadline = Deadline.current();
+        int parallelism = Math.min(defineAllParallelism, databases.size());
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < parallelism; i++) {
+            //executeAsync runs the borrow and the lookups under the deadline of this thread
+            tasks.add(pool.executeAsync(host, port, connection -> {
+                int next;
+                while ((next = cursor.getAndIncrement()) < databases.size()) {
+                    results.set(next, define(connection, word, databases.get(next)));
+                }
+                return null;
+            }));
+        }
+        AsyncExecutors.awaitAll(tasks, deadline);
+
+        List<Definition> merged = new ArrayList<>();
+        for (int i = 0; i < results.length(); i++) {
+            merged.addAll(results.get(i));
+        }
+        return merged;
+    }
+
+    private static Collection<Definition> define(DictionaryConnection connection, String word, Database database) throws DictConnectionException {
+        try {
+            return connection.getDefinitions(word, database);
+        }
+        catch (DictStatusException e) {
+            //database removed since the catalog was loaded, DEFINE * would have skipped it too
+            if (e.getStatus() == 550) {
+                return new ArrayList<>();
+            }
+            throw e;
+        }
+    }
+
+    /** Stops the automatic refresh of the catalog, if any. The pool is usually shared and is not closed; connections
+     * it holds are closed by DictionaryConnectionPool.close.
+     */
+    @Override
+    public void close() {
+        catalog.stopAutoRefresh();
+    }
+}
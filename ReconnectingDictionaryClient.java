@@ -0,0 +1,171 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.exception.DictConnectionException;
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/** A DictionaryClient for one DICT server over a single connection that is re-established when it breaks: after an
+ * I/O error, a timeout, a malformed reply or a 421, the next operation opens a new connection. While the server can't be reached,
+ * reconnection attempts are spaced by exponential backoff with jitter; operations in between fail immediately instead
+ * of each waiting for the connect timeout. Combine with RetryingDictionaryClient to replay the failed operations.
+ */
+public class ReconnectingDictionaryClient implements DictionaryClient {
+
+    private static final int DEFAULT_PORT = 2628;
+
+    private final String host;
+    private final int port;
+    private final ConnectionOptions options;
+    private final DatabaseCatalog catalog = new DatabaseCatalog(() -> call(DictionaryConnection::getDatabaseList));
+    private final LongAdder reconnects = new LongAdder();
+    private Backoff backoff = new Backoff(100, 10_000, TimeUnit.MILLISECONDS);
+
+    //guarded by this
+    private DictionaryConnection connection;
+    private boolean opened;
+    private int failures;
+    private long nextAttemptAt;
+    private boolean closed;
+
+    /** @param host Name of the host where the DICT server is running
+     */
+    public ReconnectingDictionaryClient(String host) {
+        this(host, DEFAULT_PORT, new ConnectionOptions());
+    }
+
+    /** Creates the client. The connection is opened by the first operation.
+     *
+     * @param host    Name of the host where the DICT server is running
+     * @param port    Port number used by the DICT server
+     * @param options Timeouts and metrics of the connections.
+     */
+    public ReconnectingDictionaryClient(String host, int port, ConnectionOptions options) {
+        this.host = host;
+        this.port = port;
+        this.options = options;
+    }
+
+    /** Sets the backoff between failed connection attempts. Defaults to 100 milliseconds, up to 10 seconds.
+     *
+     * @param initial Upper bound of the first delay.
+     * @param max     Upper bound of any delay.
+     * @param unit    Unit of the delays.
+     * @return This object.
+     */
+    public synchronized ReconnectingDictionaryClient setReconnectBackoff(long initial, long max, TimeUnit unit) {
+        this.backoff = new Backoff(initial, max, unit);
+        return this;
+    }
+
+    /** @return Number of connections opened after the first one.
+     */
+    public long getReconnectCount() {
+        return reconnects.sum();
+    }
+
+    @Override
+    public Collection<Definition> getDefinitions(String word, Database database) throws DictConnectionException {
+        return call(connection -> connection.getDefinitions(word, database));
+    }
+
+    @Override
+    public Set<String> getMatchList(String word, MatchingStrategy strategy, Database database) throws DictConnectionException {
+        return call(connection -> connection.getMatchList(word, strategy, database));
+    }
+
+    /** Retrieves the list of databases and refreshes the catalog of this client, which outlives the connections.
+     */
+    @Override
+    public Collection<Database> getDatabaseList() throws DictConnectionException {
+        return catalog.refresh().getDatabases();
+    }
+
+    @Override
+    public Set<MatchingStrategy> getStrategyList() throws DictConnectionException {
+        return call(DictionaryConnection::getStrategyList);
+    }
+
+    @Override
+    public DatabaseCatalog getCatalog() {
+        return catalog;
+    }
+
+    @Override
+    public void close() {
+        catalog.stopAutoRefresh();
+        DictionaryConnection current;
+        synchronized (this) {
+            closed = true;
+            current = connection;
+            connection = null;
+        }
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    /** Runs an operation on the current connection. If it fails with anything but an error status line, part of a reply
+     * may still be unread, so the connection is dropped and the next operation opens a new one.
+     */
+    private <T> T call(DictionaryConnectionPool.PooledCall<T> call) throws DictConnectionException {
+        DictionaryConnection current = connection();
+        try {
+            return call.call(current);
+        }
+        catch (DictStatusException e) {
+            //a status line leaves the stream in sync, a 421 has already closed the connection
+            throw e;
+        }
+        catch (DictConnectionException | RuntimeException e) {
+            drop(current);
+            throw e;
+        }
+    }
+
+    private void drop(DictionaryConnection failed) {
+        synchronized (this) {
+            if (connection == failed) {
+                connection = null;
+            }
+        }
+        failed.close();
+    }
+
+    /** Returns the current connection, opening a new one if it is missing or broken.
+     */
+    private synchronized DictionaryConnection connection() throws DictConnectionException {
+        if (closed) {
+            throw new DictConnectionException("client is closed");
+        }
+        if (connection != null && !connection.isClosed()) {
+            return connection;
+        }
+
+        long now = System.nanoTime();
+        if (failures > 0 && now - nextAttemptAt < 0) {
+            throw new DictConnectionException("not reconnecting to " + host + " for another "
+                    + TimeUnit.NANOSECONDS.toMillis(nextAttemptAt - now) + "ms");
+        }
+        try {
+            connection = new DictionaryConnection(host, port, options);
+            if (opened) {
+                reconnects.increment();
+            }
+            opened = true;
+            failures = 0;
+            return connection;
+        }
+        catch (DictConnectionException e) {
+            connection = null;
+            failures++;
+            nextAttemptAt = now + backoff.delayNanos(failures);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.exception.DictConnectionException;
+import ca.ubc.cs317.dict.model.Definition;
+import ca.ubc.cs317.dict.util.DictStringParser;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/** Incremental decoder for the reply to a single DICT command. Lines are pushed one at a time as they are read from the
+ * network, so a reply can be decoded without blocking a thread while the rest of it is still in transit.
+ *
+ * @param <T> Type of the decoded reply.
+ */
+abstract class ReplyDecoder<T> {
+
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+
+    /** Handles the next line of the reply, without its line terminator.
+     *
+     * @param line The next line received from the server.
+     * @return True if this was the last line of the reply.
+     * @throws DictConnectionException If the line doesn't match its expected value, in which case the rest of the
+     * stream can't be trusted.
+     */
+    abstract boolean onLine(String line) throws DictConnectionException;
+
+    CompletableFuture<T> result() {
+        return result;
+    }
+
+    void complete(T value) {
+        result.complete(value);
+    }
+
+    void fail(Throwable cause) {
+        result.completeExceptionally(cause);
+    }
+
+    /** Parses the three-digit status code at the start of a status line.
+     */
+    static int statusCode(String line) throws DictConnectionException {
+        if (line.length() < 3) {
+            throw new DictConnectionException("invalid status line: " + line);
+        }
+        int code = 0;
+        for (int i = 0; i < 3; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new DictConnectionException("invalid status line: " + line);
+            }
+            code = code * 10 + (c - '0');
+        }
+        return code;
+    }
+
+    /** Returns the text following the status code of a status line.
+     */
+    static String details(String line) {
+        return line.length() > 4 ? line.substring(4) : "";
+    }
+
+    /** Reply made of a single status line, e.g. the 220 banner or the 221 answer to QUIT.
+     */
+    static final class StatusReply extends ReplyDecoder<String> {
+
+        private final int expected;
+
+        StatusReply(int expected) {
+            this.expected = expected;
+        }
+
+        @Override
+        boolean onLine(String line) throws DictConnectionException {
+            if (statusCode(line) == expected) {
+                complete(details(line));
+            }
+            else {
+                fail(new DictConnectionException("unexpected reply: " + line));
+            }
+            return true;
+        }
+    }
+
+    /** Reply to a DEFINE command: 150, then a 151 header and a dot-terminated text body per definition, then 250.
+     */
+    static final class DefinitionReply extends ReplyDecoder<Collection<Definition>> {
+
+        private static final int STATUS = 0;
+        private static final int HEADER = 1;
+        private static final int BODY = 2;
+
+        private final String word;
+        private final DatabaseCatalog catalog;
+        private final Collection<Definition> definitions = new ArrayList<>();
+        private Definition current;
+        private int state = STATUS;
+
+        DefinitionReply(String word, DatabaseCatalog catalog) {
+            this.word = word;
+            this.catalog = catalog;
+        }
+
+        @Override
+        boolean onLine(String line) throws DictConnectionException {
+            switch (state) {
+                case STATUS:
+                    int code = statusCode(line);
+                    if (code == 150) {
+                        state = HEADER;
+                        return false;
+                    }
+                    //no definitions found
+                    if (code == 552) {
+                        complete(definitions);
+                    }
+                    else {
+                        fail(new DictConnectionException("unexpected reply: " + line));
+                    }
+                    return true;
+                case HEADER:
+                    int headerCode = statusCode(line);
+                    if (headerCode == 250) {
+                        complete(definitions);
+                        return true;
+                    }
+                    if (headerCode != 151) {
+                        throw new DictConnectionException("unexpected reply: " + line);
+                    }
+                    String[] details = DictStringParser.splitAtoms(details(line));
+                    current = new Definition(word, DictionaryConnection.resolveDatabase(catalog.current(), details));
+                    state = BODY;
+                    return false;
+                default:
+                    if (line.equals(".")) {
+                        definitions.add(current);
+                        current = null;
+                        state = HEADER;
+                    }
+                    else {
+                        //undo dot-stuffing
+                        current.appendDefinition(line.startsWith("..") ? line.substring(1) : line);
+                    }
+                    return false;
+            }
+        }
+    }
+
+    /** Reply made of a status line, a dot-terminated list of entries and a final 250, as sent for MATCH, SHOW DB and
+     * SHOW STRAT. Each entry is made of two atoms. A single-line "nothing found" status is decoded as an empty list.
+     */
+    static final class ListReply<E> extends ReplyDecoder<List<E>> {
+
+        private final int listCode;
+        private final int emptyCode;
+        private final Function<String[], E> entry;
+        private final List<E> entries = new ArrayList<>();
+        private boolean inList;
+        private boolean listDone;
+
+        ListReply(int listCode, int emptyCode, Function<String[], E> entry) {
+            this.listCode = listCode;
+            this.emptyCode = emptyCode;
+            this.entry = entry;
+        }
+
+        @Override
+        boolean onLine(String line) throws DictConnectionException {
+            if (inList) {
+                if (line.equals(".")) {
+                    inList = false;
+                    listDone = true;
+                }
+                else {
+                    String[] atoms = DictStringParser.splitAtoms(line.startsWith("..") ? line.substring(1) : line);
+                    if (atoms.length < 2) {
+                        throw new DictConnectionException("invalid list entry: " + line);
+                    }
+                    entries.add(entry.apply(atoms));
+                }
+                return false;
+            }
+            int code = statusCode(line);
+            if (listDone) {
+                if (code != 250) {
+                    throw new DictConnectionException("unexpected reply: " + line);
+                }
+                complete(entries);
+                return true;
+            }
+            if (code == listCode) {
+                inList = true;
+                return false;
+            }
+            if (code == emptyCode) {
+                complete(entries);
+            }
+            else {
+                fail(new DictConnectionException("unexpected reply: " + line));
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package ca.ubc.cs317.dict.net;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Size-bounded LRU cache with a time-to-live per entry and hit/miss statistics. The cache is split into segments,
+ * each with its own lock, so threads looking up different keys rarely contend.
+ *
+ * @param <K> Type of the keys.
+ * @param <V> Type of the cached values.
+ */
+public class ResultCache<K, V> {
+
+    private static final int SEGMENTS = 16;
+
+    /** Point-in-time copy of the statistics of a cache.
+     */
+    public static final class Statistics {
+
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+        private final long size;
+
+        private Statistics(long hits, long misses, long evictions, long expirations, long size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+            this.size = size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        /** @return Number of entries removed to keep the cache within its maximum size.
+         */
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /** @return Number of entries removed because their time-to-live had passed.
+         */
+        public long getExpirations() {
+            return expirations;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /** @return Fraction of lookups that were hits, or 0 if there were no lookups.
+         */
+        public double getHitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", expirations=" + expirations
+                    + ", size=" + size;
+        }
+    }
+
+    private static final class Entry<V> {
+
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final Segment[] segments;
+    private final long ttlNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    /** Creates an empty cache.
+     *
+     * @param maxEntries Maximum number of entries; the least recently used entries are evicted beyond it.
+     * @param ttl        Time after which an entry expires.
+     * @param unit       Unit of the time-to-live.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ResultCache(int maxEntries, long ttl, TimeUnit unit) {
+        if (maxEntries < 1 || ttl <= 0) {
+            throw new IllegalArgumentException("cache size and time-to-live must be positive");
+        }
+        this.ttlNanos = unit.toNanos(ttl);
+        int segmentCount = Math.min(SEGMENTS, maxEntries);
+        segments = new ResultCache.Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            //spread the remainder so the segments add up to maxEntries
+            segments[i] = new Segment(maxEntries / segmentCount + (i < maxEntries % segmentCount ? 1 : 0));
+        }
+    }
+
+    /** Returns the value cached for a key, if it has not expired.
+     *
+     * @param key The key.
+     * @return The cached value, or null on a miss.
+     */
+    public V get(K key) {
+        V value = segmentFor(key).get(key, System.nanoTime());
+        if (value == null) {
+            misses.increment();
+        }
+        else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    /** Caches a value, replacing any previous value for the key.
+     *
+     * @param key   The key.
+     * @param value The value, must not be null.
+     */
+    public void put(K key, V value) {
+        if (value == null) {
+            throw new NullPointerException("null values can't be cached");
+        }
+        segmentFor(key).put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+    }
+
+    /** Removes the value cached for a key, if any.
+     *
+     * @param key The key.
+     */
+    public void invalidate(K key) {
+        segmentFor(key).remove(key);
+    }
+
+    /** Removes all cached values. Statistics are kept.
+     */
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /** @return The number of entries currently cached, including entries that have expired but not been removed yet.
+     */
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /** @return A copy of the current statistics.
+     */
+    public Statistics getStatistics() {
+        return new Statistics(hits.sum(), misses.sum(), evictions.sum(), expirations.sum(), size());
+    }
+
+    private Segment segmentFor(K key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return segments[Math.floorMod(h, segments.length)];
+    }
+
+    /** A part of the cache guarded by its own lock, with LRU order kept by an access-ordered LinkedHashMap.
+     */
+    private final class Segment {
+
+        private final int capacity;
+        private final LinkedHashMap<K, Entry<V>> map;
+
+        private Segment(int capacity) {
+            this.capacity = capacity;
+            this.map = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                    if (size() > Segment.this.capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        private synchronized V get(K key, long now) {
+            Entry<V> entry = map.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (now - entry.expiresAt >= 0) {
+                map.remove(key);
+                expirations.increment();
+                return null;
+            }
+            return entry.value;
+        }
+
+        private synchronized void put(K key, Entry<V> entry) {
+            map.put(key, entry);
+        }
+
+        private synchronized void remove(K key) {
+            map.remove(key);
+        }
+
+        private synchronized void clear() {
+            map.clear();
+        }
+
+        private synchronized int size() {
+            return map.size();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package ca.ubc.cs317.dict.net;
+
+/** Limits retries (and other extra requests, such as hedges) to a fraction of the regular traffic, so that a server
+ * that fails every request gets at most (1 + ratio) times the normal load instead of maxAttempts times. Every request
+ * deposits ratio tokens, every retry withdraws one; deposits are capped so that a long quiet period can't build up a
+ * burst. A small reserve of retries per second is always allowed, so that a client with little traffic can still
+ * retry. A budget can be shared by several clients talking to the same servers.
+ */
+public class RetryBudget {
+
+    private final double ratio;
+    private final int reservePerSecond;
+    private final double maxBalance;
+
+    private double balance;
+    private long reserveSecond;
+    private int reserveUsed;
+    private long retries;
+    private long rejected;
+
+    /** @param ratio            Retries allowed per request, e.g. 0.1 for 10%.
+     * @param reservePerSecond Retries allowed per second regardless of the traffic.
+     */
+    public RetryBudget(double ratio, int reservePerSecond) {
+        if (ratio < 0 || reservePerSecond < 0) {
+            throw new IllegalArgumentException("budget must not be negative");
+        }
+        this.ratio = ratio;
+        this.reservePerSecond = reservePerSecond;
+        this.maxBalance = Math.max(1, ratio * 1000);
+    }
+
+    /** Records a request, which adds to the budget.
+     */
+    public synchronized void onRequest() {
+        balance = Math.min(maxBalance, balance + ratio);
+    }
+
+    /** Takes one retry out of the budget if there is any left.
+     *
+     * @return True if the retry may be sent, false if the budget is exhausted.
+     */
+    public synchronized boolean tryAcquire() {
+        if (balance >= 1) {
+            balance -= 1;
+            retries++;
+            return true;
+        }
+        long second = System.nanoTime() / 1_000_000_000L;
+        if (second != reserveSecond) {
+            reserveSecond = second;
+            reserveUsed = 0;
+        }
+        if (reserveUsed < reservePerSecond) {
+            reserveUsed++;
+            retries++;
+            return true;
+        }
+        rejected++;
+        return false;
+    }
+
+    /** @return Number of retries allowed so far.
+     */
+    public synchronized long getRetryCount() {
+        return retries;
+    }
+
+    /** @return Number of retries refused because the budget was exhausted.
+     */
+    public synchronized long getRejectedCount() {
+        return rejected;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "RetryBudget[ratio=" + ratio + ", balance=" + balance + ", retries=" + retries + ", rejected="
+                + rejected + "]";
+    }
+}
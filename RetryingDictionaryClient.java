@@ -0,0 +1,147 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.exception.DictConnectionException;
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Decorates a DictionaryClient to replay failed operations. All DICT lookups (DEFINE, MATCH, SHOW) are idempotent, so
+ * they can be sent again safely. The wrapped client must be able to recover between attempts, e.g. a
+ * ReconnectingDictionaryClient or a PooledDictionaryClient, which both replace a broken connection.
+ *
+ * Failures are retried if they are transient: I/O errors, timeouts and 4xx statuses such as 420 and 421. Permanent
+ * errors (e.g. 550 invalid database) are not. Attempts are spaced by exponential backoff with jitter, never go past
+ * the deadline of the call (see Deadline), and are limited by a RetryBudget so that a dead server doesn't cause a
+ * retry storm.
+ */
+public class RetryingDictionaryClient extends ForwardingDictionaryClient {
+
+    private int maxAttempts = 3;
+    private Backoff backoff = new Backoff(50, 2000, TimeUnit.MILLISECONDS);
+    private RetryBudget budget = new RetryBudget(0.2, 10);
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    /** @param client The client whose operations are retried.
+     */
+    public RetryingDictionaryClient(DictionaryClient client) {
+        super(client);
+    }
+
+    /** Sets the maximum number of attempts per operation, including the first one. Defaults to 3.
+     *
+     * @param maxAttempts Number of attempts, at least 1.
+     * @return This object.
+     */
+    public RetryingDictionaryClient setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("at least one attempt is needed");
+        }
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    /** Sets the backoff between attempts: the n-th retry waits a random time between 0 and min(max, initial * 2^(n-1)).
+     * Defaults to 50 milliseconds, up to 2 seconds.
+     *
+     * @param initial Upper bound of the first delay.
+     * @param max     Upper bound of any delay.
+     * @param unit    Unit of the delays.
+     * @return This object.
+     */
+    public RetryingDictionaryClient setBackoff(long initial, long max, TimeUnit unit) {
+        this.backoff = new Backoff(initial, max, unit);
+        return this;
+    }
+
+    /** Sets the budget retries are taken from. Defaults to 20% of the requests plus 10 retries per second. A budget
+     * can be shared by the clients of a same cluster.
+     *
+     * @param budget The budget.
+     * @return This object.
+     */
+    public RetryingDictionaryClient setBudget(RetryBudget budget) {
+        this.budget = Objects.requireNonNull(budget);
+        return this;
+    }
+
+    /** @return Number of attempts made after a failure.
+     */
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    /** @return Number of failures that were not retried because the budget was exhausted.
+     */
+    public long getBudgetExhaustedCount() {
+        return exhausted.sum();
+    }
+
+    @Override
+    public Collection<Definition> getDefinitions(String word, Database database) throws DictConnectionException {
+        return retry(() -> delegate.getDefinitions(word, database));
+    }
+
+    @Override
+    public Set<String> getMatchList(String word, MatchingStrategy strategy, Database database) throws DictConnectionException {
+        return retry(() -> delegate.getMatchList(word, strategy, database));
+    }
+
+    @Override
+    public Collection<Database> getDatabaseList() throws DictConnectionException {
+        return retry(delegate::getDatabaseList);
+    }
+
+    @Override
+    public Set<MatchingStrategy> getStrategyList() throws DictConnectionException {
+        return retry(delegate::getStrategyList);
+    }
+
+    /** @param e A failure.
+     * @return True if the same operation may succeed if it is sent again.
+     */
+    static boolean isRetryable(DictConnectionException e) {
+        if (e instanceof DictStatusException) {
+            return ((DictStatusException) e).isTransient();
+        }
+        return true;
+    }
+
+    private <T> T retry(Deadline.Call<T> call) throws DictConnectionException {
+        RetryBudget budget = this.budget;
+        budget.onRequest();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.call();
+            }
+            catch (DictConnectionException e) {
+                if (attempt >= maxAttempts || !isRetryable(e)) {
+                    throw e;
+                }
+                long delay = backoff.delayNanos(attempt);
+                //don't start an attempt that can't finish in time
+                if (delay >= Deadline.current().remainingNanos()) {
+                    throw e;
+                }
+                if (!budget.tryAcquire()) {
+                    exhausted.increment();
+                    throw e;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.sleep(delay);
+                }
+                catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+                retries.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.exception.DictConnectionException;
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/** Presents databases spread over several DICT servers (shards) as a single dictionary. Each shard is reached through
+ * its own DictionaryClient, e.g. a PooledDictionaryClient, or a LoadBalancedDictionaryClient when a shard is
+ * replicated.
+ *
+ * The catalog of this client lists the databases of every shard, in the order of the shards and then in the order each
+ * shard returns them (SHOW DB). A request for a specific database goes straight to the shard that owns it; a database
+ * listed by several shards belongs to the first one. Requests for '*' are sent to all shards in parallel and their
+ * results are merged in catalog order. Requests for '!' are also sent to all shards in parallel, and the result of the
+ * first shard in catalog order that found anything is returned, without waiting for the shards after it.
+ */
+public class ShardedDictionaryClient implements DictionaryClient {
+
+    /** A request sent to one shard.
+     */
+    private interface ShardCall<T> {
+        T call(DictionaryClient shard) throws DictConnectionException;
+    }
+
+    /** Which shard owns each database, derived from the catalogs of the shards.
+     */
+    private static final class Routing {
+
+        private final Map<String, Integer> owners = new HashMap<>();
+        private final Map<String, Integer> positions = new HashMap<>();
+        private final List<Database> databases = new ArrayList<>();
+    }
+
+    private final List<DictionaryClient> shards;
+    private final DatabaseCatalog catalog = new DatabaseCatalog(this::loadDatabases);
+    private volatile Routing routing = new Routing();
+    private volatile Executor executor = AsyncExecutors.defaultExecutor();
+
+    /** @param shards Clients of the servers, in the order their databases are listed.
+     */
+    public ShardedDictionaryClient(List<? extends DictionaryClient> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("at least one shard is needed");
+        }
+        this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+        for (DictionaryClient shard : this.shards) {
+            //keep routing up to date when a shard refreshes its own catalog
+            shard.getCatalog().addListener(snapshot -> catalog.update(buildRouting().databases));
+        }
+    }
+
+    /** Sets the executor the requests to the shards run on when '*' or '!' fan out. Defaults to the executor of the
+     * asynchronous calls (virtual threads when available).
+     *
+     * @param executor The executor.
+     * @return This object.
+     */
+    public ShardedDictionaryClient setExecutor(Executor executor) {
+        this.executor = Objects.requireNonNull(executor);
+        return this;
+    }
+
+    /** @param database Name of a database.
+     * @return The client of the shard that owns the database, or null if no shard lists it.
+     * @throws DictConnectionException If the catalogs of the shards had to be loaded and could not be.
+     */
+    public DictionaryClient getShard(String database) throws DictConnectionException {
+        catalog.ensureLoaded();
+        Integer owner = routing.owners.get(database);
+        return owner == null ? null : shards.get(owner);
+    }
+
+    /** Retrieves all definitions for a specific word.
+     *
+     * @param word     The word whose definition is to be retrieved.
+     * @param database The database to be used to retrieve the definition ('*' and '!' are allowed).
+     * @return A collection of Definition objects, in catalog order.
+     * @throws DictConnectionException If a shard involved in the request failed, or the database is unknown
+     * (DictStatusException with status 550).
+     */
+    @Override
+    public Collection<Definition> getDefinitions(String word, Database database) throws DictConnectionException {
+        String name = database.getName();
+        if ("*".equals(name)) {
+            catalog.ensureLoaded();
+            Routing current = routing;
+            List<Collection<Definition>> replies = fanOut(shard -> shard.getDefinitions(word, database));
+            List<Definition> merged = new ArrayList<>();
+            for (int i = 0; i < replies.size(); i++) {
+                for (Definition definition : replies.get(i)) {
+                    //a database listed by several shards only counts once, from its owner
+                    Integer owner = current.owners.get(definition.getDatabase().getName());
+                    if (owner == null || owner == i) {
+                        merged.add(definition);
+                    }
+                }
+            }
+            //stable, so definitions of the same database keep the order of the server
+            merged.sort(Comparator.comparingInt(definition ->
+                    current.positions.getOrDefault(definition.getDatabase().getName(), Integer.MAX_VALUE)));
+            return merged;
+        }
+        if ("!".equals(name)) {
+            return firstNonEmpty(shard -> shard.getDefinitions(word, database));
+        }
+        return owner(name).getDefinitions(word, database);
+    }
+
+    /** Retrieves a list of matches for a specific word pattern.
+     *
+     * @param word     The word pattern to be matched.
+     * @param strategy The strategy to be used to retrieve the list of matches (e.g., prefix, exact).
+     * @param database The database to be used to retrieve the matches ('*' and '!' are allowed).
+     * @return A set of word matches, in catalog order.
+     * @throws DictConnectionException If a shard involved in the request failed, or the database is unknown
+     * (DictStatusException with status 550).
+     */
+    @Override
+    public Set<String> getMatchList(String word, MatchingStrategy strategy, Database database) throws DictConnectionException {
+        String name = database.getName();
+        if ("*".equals(name)) {
+            Set<String> merged = new LinkedHashSet<>();
+            for (Set<String> matches : fanOut(shard -> shard.getMatchList(word, strategy, database))) {
+                merged.addAll(matches);
+            }
+            return merged;
+        }
+        if ("!".equals(name)) {
+            return firstNonEmpty(shard -> shard.getMatchList(word, strategy, database));
+        }
+        return owner(name).getMatchList(word, strategy, database);
+    }
+
+    /** Reloads the databases of every shard and rebuilds the routing from them.
+     *
+     * @return The databases of all shards, in catalog order.
+     * @throws DictConnectionException If no shard returned its list of databases.
+     */
+    @Override
+    public Collection<Database> getDatabaseList() throws DictConnectionException {
+        return catalog.refresh().getDatabases();
+    }
+
+    /** @return The strategies supported by any of the shards.
+     * @throws DictConnectionException If a shard failed to list its strategies.
+     */
+    @Override
+    public Set<MatchingStrategy> getStrategyList() throws DictConnectionException {
+        Map<String, MatchingStrategy> strategies = new LinkedHashMap<>();
+        for (Set<MatchingStrategy> supported : fanOut(DictionaryClient::getStrategyList)) {
+            for (MatchingStrategy strategy : supported) {
+                strategies.putIfAbsent(strategy.getName(), strategy);
+            }
+        }
+        return new LinkedHashSet<>(strategies.values());
+    }
+
+    @Override
+    public DatabaseCatalog getCatalog() {
+        return catalog;
+    }
+
+    /** Closes the clients of all shards.
+     */
+    @Override
+    public void close() {
+        catalog.stopAutoRefresh();
+        for (DictionaryClient shard : shards) {
+            shard.close();
+        }
+    }
+
+    private DictionaryClient owner(String database) throws DictConnectionException {
+        DictionaryClient shard = getShard(database);
+        if (shard == null) {
+            throw new DictStatusException(550, "invalid database: " + database);
+        }
+        return shard;
+    }
+
+    /** Sends a request to all shards at once and returns their replies in shard order.
+     */
+    private <T> List<T> fanOut(ShardCall<T> call) throws DictConnectionException {
+        List<CompletableFuture<T>> replies = start(call);
+        AsyncExecutors.awaitAll(replies);
+        List<T> results = new ArrayList<>(replies.size());
+        for (CompletableFuture<T> reply : replies) {
+            results.add(reply.join());
+        }
+        return results;
+    }
+
+    /** Sends a request to all shards at once and returns the first non-empty reply in shard order. Replies of the
+     * shards after it are not waited for.
+     */
+    private <T extends Collection<?>> T firstNonEmpty(ShardCall<T> call) throws DictConnectionException {
+        List<CompletableFuture<T>> replies = start(call);
+        T result = null;
+        for (CompletableFuture<T> reply : replies) {
+            result = AsyncExecutors.await(reply);
+            if (!result.isEmpty()) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private <T> List<CompletableFuture<T>> start(ShardCall<T> call) {
+        Deadline deadline = Deadline.current();
+        List<CompletableFuture<T>> replies = new ArrayList<>(shards.size());
+        for (DictionaryClient shard : shards) {
+            replies.add(AsyncExecutors.supply(() -> Deadline.within(deadline, () -> call.call(shard)), executor));
+        }
+        return replies;
+    }
+
+    private Collection<Database> loadDatabases() throws DictConnectionException {
+        List<CompletableFuture<Collection<Database>>> replies = start(DictionaryClient::getDatabaseList);
+        DictConnectionException failure = null;
+        boolean loaded = false;
+        for (CompletableFuture<Collection<Database>> reply : replies) {
+            try {
+                //the shard refreshes its own catalog, which is all buildRouting needs
+                AsyncExecutors.await(reply);
+                loaded = true;
+            }
+            catch (DictConnectionException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (!loaded) {
+            throw failure;
+        }
+        return buildRouting().databases;
+    }
+
+    /** Rebuilds the routing from the current catalogs of the shards. A shard that failed to load its catalog keeps the
+     * databases it listed last.
+     */
+    private synchronized Routing buildRouting() {
+        Routing built = new Routing();
+        for (int i = 0; i < shards.size(); i++) {
+            for (Database database : shards.get(i).getCatalog().current().getDatabases()) {
+                if (built.owners.putIfAbsent(database.getName(), i) == null) {
+                    built.positions.put(database.getName(), built.databases.size());
+                    built.databases.add(database);
+                }
+            }
+        }
+        routing = built;
+        return built;
+    }
+}
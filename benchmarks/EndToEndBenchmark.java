@@ -0,0 +1,78 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.exception.DictConnectionException;
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+import ca.ubc.cs317.dict.net.testing.MockDictServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/** End-to-end lookups through DictionaryConnection against a MockDictServer on the loopback interface, so the numbers
+ * include the protocol round trip and reply parsing but no network. The corpus has two databases of a few thousand
+ * words; padding makes every definition body larger. Run with "-prof gc" to see allocations per lookup.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EndToEndBenchmark {
+
+    private static final int WORDS = 5000;
+
+    //bytes added to every definition
+    @Param({"0", "4096"})
+    public int padding;
+
+    private MockDictServer server;
+    private DictionaryConnection connection;
+    private final Database wordnet = new Database("wn", "WordNet");
+    private final Database all = new Database("*", "All databases");
+    private final MatchingStrategy prefix = new MatchingStrategy("prefix", "Match prefixes");
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, DictConnectionException {
+        server = new MockDictServer();
+        for (int i = 0; i < WORDS; i++) {
+            server.addDefinition("wn", "WordNet", "word" + i, "word" + i + "\n  n 1: definition number " + i);
+            server.addDefinition("gcide", "GCIDE", "word" + i, "Word" + i + " \\Word\\, n.\n  Definition " + i + ".");
+        }
+        server.setPadding(padding).start();
+        connection = new DictionaryConnection("localhost", server.getPort());
+        //load the catalog outside of the measurements
+        connection.getDatabaseList();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        connection.close();
+        server.close();
+    }
+
+    @Benchmark
+    public Collection<Definition> getDefinitions() throws DictConnectionException {
+        return connection.getDefinitions(nextWord(), wordnet);
+    }
+
+    @Benchmark
+    public Collection<Definition> getDefinitionsAllDatabases() throws DictConnectionException {
+        return connection.getDefinitions(nextWord(), all);
+    }
+
+    @Benchmark
+    public Set<String> getMatchList() throws DictConnectionException {
+        //"word12" matches word12 and word120..word129, and so on
+        return connection.getMatchList("word" + (next++ % 500), prefix, wordnet);
+    }
+
+    private String nextWord() {
+        return "word" + (next++ % WORDS);
+    }
+}
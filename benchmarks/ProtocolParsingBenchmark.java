@@ -0,0 +1,112 @@
+package ca.ubc.cs317.dict.net;
+
+import ca.ubc.cs317.dict.exception.DictConnectionException;
+import ca.ubc.cs317.dict.util.DictStringParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/** Micro-benchmarks of reply parsing, without any socket: status lines, atoms and definition bodies, each parsed with
+ * the skeleton's String-based helpers (Status, DictStringParser) and with the byte-oriented DictResponseReader.
+ * A connection keeps its DictResponseReader for its whole life, so each reader benchmark reuses one reader and rewinds
+ * its input instead of creating a reader per reply. Run with "-prof gc" to compare allocation rates as well as time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProtocolParsingBenchmark {
+
+    private static final String STATUS = "151 \"cat\" wn \"WordNet (r) 3.0 (2006)\"\r\n";
+    private static final String MATCH_LINE = "gcide \"Cat's-paw\"";
+
+    //number of text lines in the definition body
+    @Param({"10", "1000"})
+    public int lines;
+
+    private byte[] body;
+
+    //each reply ends with its last line, so the reader has nothing buffered once a reply was read
+    private ByteArrayInputStream statusInput;
+    private DictResponseReader statusReader;
+    private ByteArrayInputStream atomsInput;
+    private DictResponseReader atomsReader;
+    private ByteArrayInputStream bodyInput;
+    private DictResponseReader bodyReader;
+
+    @Setup
+    public void setUp() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            text.append(i % 10 == 0 ? ".. dot-stuffed line " : "   n 1: feline mammal usually having thick soft fur ")
+                    .append(i).append("\r\n");
+        }
+        text.append(".\r\n");
+        body = text.toString().getBytes(StandardCharsets.UTF_8);
+
+        statusInput = new ByteArrayInputStream(STATUS.getBytes(StandardCharsets.UTF_8));
+        statusReader = new DictResponseReader(statusInput);
+        atomsInput = new ByteArrayInputStream((MATCH_LINE + "\r\n").getBytes(StandardCharsets.UTF_8));
+        atomsReader = new DictResponseReader(atomsInput);
+        bodyInput = new ByteArrayInputStream(body);
+        bodyReader = new DictResponseReader(bodyInput);
+    }
+
+    @Benchmark
+    public void statusReadStatus(Blackhole blackhole) throws DictConnectionException {
+        Status status = Status.readStatus(new BufferedReader(new StringReader(STATUS)));
+        blackhole.consume(status.getStatusCode());
+        blackhole.consume(status.getDetails());
+    }
+
+    @Benchmark
+    public void readerReadStatus(Blackhole blackhole) throws IOException, DictConnectionException {
+        statusInput.reset();
+        blackhole.consume(statusReader.readStatus());
+        blackhole.consume(statusReader.atom(1));
+    }
+
+    @Benchmark
+    public String[] splitAtoms() {
+        return DictStringParser.splitAtoms(MATCH_LINE);
+    }
+
+    @Benchmark
+    public void readerAtoms(Blackhole blackhole) throws IOException {
+        atomsInput.reset();
+        atomsReader.readTextLine();
+        blackhole.consume(atomsReader.atom(0));
+        blackhole.consume(atomsReader.atom(1));
+    }
+
+    @Benchmark
+    public String bufferedReaderBody() throws IOException {
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8));
+        StringBuilder definition = new StringBuilder();
+        String line;
+        while (!(line = reader.readLine()).equals(".")) {
+            definition.append(line.startsWith("..") ? line.substring(1) : line).append('\n');
+        }
+        return definition.toString();
+    }
+
+    @Benchmark
+    public String readerBody() throws IOException {
+        bodyInput.reset();
+        StringBuilder definition = new StringBuilder();
+        while (bodyReader.readTextLine()) {
+            definition.append(bodyReader.text()).append('\n');
+        }
+        return definition.toString();
+    }
+}
@@ -0,0 +1,699 @@
+package ca.ubc.cs317.dict.net.testing;
+
+import ca.ubc.cs317.dict.exception.DictConnectionException;
+import ca.ubc.cs317.dict.model.Database;
+import ca.ubc.cs317.dict.model.Definition;
+import ca.ubc.cs317.dict.model.MatchingStrategy;
+import ca.ubc.cs317.dict.net.DatabaseCatalog;
+import ca.ubc.cs317.dict.net.DictionaryClient;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/** An embeddable stand-in for a DICT server, for tests and benchmarks that must not depend on the network or on a real
+ * dictd. It listens on the loopback interface and speaks the subset of RFC 2229 used by DictionaryConnection: the 220
+ * banner, DEFINE, MATCH, SHOW DB, SHOW STRAT, STATUS, CLIENT and QUIT.
+ *
+ * Answers come from a corpus, which is either the built-in in-memory one (filled with addDefinition) or any other
+ * DictionaryClient, e.g. a LocalDictionary to serve dictd files. Replies can be slowed down (setLatency), made larger
+ * (setPadding) and broken on purpose (setFault), which makes it possible to exercise timeouts, retries and failover on
+ * demand.
+ *
+ * It is test support, kept out of the client package and of the production sources; tests and benchmarks add the
+ * testing directory to their source path.
+ *
+ * <pre>
+ * MockDictServer server = new MockDictServer()
+ *         .addDefinition("wn", "WordNet", "cat", "feline mammal")
+ *         .setLatency(5, 10, TimeUnit.MILLISECONDS)
+ *         .start();
+ * DictionaryConnection connection = new DictionaryConnection("localhost", server.getPort());
+ * </pre>
+ */
+public class MockDictServer implements Closeable {
+
+    /** Faults that can be injected in the reply to a command.
+     */
+    public enum Fault {
+        /** Reply normally. */
+        NONE,
+        /** Close the connection instead of replying. */
+        DISCONNECT,
+        /** Reply "420 Server temporarily unavailable" and keep the connection. */
+        UNAVAILABLE,
+        /** Reply "421 Server shutting down" and close the connection. */
+        SHUTDOWN,
+        /** Reply with a line that is not a valid status line. */
+        GARBAGE,
+        /** Send the first half of the reply, then close the connection. */
+        TRUNCATE,
+        /** Never reply; the connection is kept open until the server is closed. */
+        STALL
+    }
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final DictionaryClient corpus;
+    private final InMemoryCorpus memory;
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+    private final LongAdder connections = new LongAdder();
+    private final LongAdder commands = new LongAdder();
+    private final LongAdder faults = new LongAdder();
+
+    private volatile long minLatencyNanos;
+    private volatile long maxLatencyNanos;
+    private volatile int padding;
+    private volatile Fault fault = Fault.NONE;
+    private volatile double faultRate;
+
+    private ServerSocket serverSocket;
+    private ExecutorService workers;
+    private volatile boolean closed;
+
+    /** Creates a server backed by an empty in-memory corpus, to be filled with addDefinition.
+     */
+    public MockDictServer() {
+        this.memory = new InMemoryCorpus();
+        this.corpus = memory;
+    }
+
+    /** Creates a server whose answers come from another client, e.g. a LocalDictionary.
+     *
+     * @param corpus The client used to answer DEFINE, MATCH, SHOW DB and SHOW STRAT.
+     */
+    public MockDictServer(DictionaryClient corpus) {
+        this.memory = null;
+        this.corpus = corpus;
+    }
+
+    /** Adds a definition to the in-memory corpus, creating the database if needed.
+     *
+     * @param database    Name of the database.
+     * @param description Description of the database, used when it is created.
+     * @param word        Headword.
+     * @param text        Text of the definition; lines are separated by "\n".
+     * @return This object.
+     * @throws IllegalStateException If the server is backed by another client.
+     */
+    public MockDictServer addDefinition(String database, String description, String word, String text) {
+        if (memory == null) {
+            throw new IllegalStateException("server is not backed by the in-memory corpus");
+        }
+        memory.add(database, description, word, text);
+        return this;
+    }
+
+    /** Delays every reply by a random time between min and max, to simulate a remote or loaded server.
+     *
+     * @param min  Minimum delay.
+     * @param max  Maximum delay.
+     * @param unit Unit of the delays.
+     * @return This object.
+     */
+    public MockDictServer setLatency(long min, long max, TimeUnit unit) {
+        if (min < 0 || max < min) {
+            throw new IllegalArgumentException("invalid latency range");
+        }
+        this.minLatencyNanos = unit.toNanos(min);
+        this.maxLatencyNanos = unit.toNanos(max);
+        return this;
+    }
+
+    /** Adds filler lines to every definition, to measure the cost of large replies without a large corpus.
+     *
+     * @param bytes Approximate number of bytes added to each definition.
+     * @return This object.
+     */
+    public MockDictServer setPadding(int bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("padding must not be negative");
+        }
+        this.padding = bytes;
+        return this;
+    }
+
+    /** Injects a fault in a fraction of the replies. The banner is never affected.
+     *
+     * @param fault The fault to inject.
+     * @param rate  Fraction of the commands affected, from 0 (none) to 1 (all of them).
+     * @return This object.
+     */
+    public MockDictServer setFault(Fault fault, double rate) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("rate must be between 0 and 1");
+        }
+        this.fault = Objects.requireNonNull(fault);
+        this.faultRate = rate;
+        return this;
+    }
+
+    /** Starts listening on an ephemeral port of the loopback interface.
+     *
+     * @return This object.
+     * @throws IOException If the socket could not be bound.
+     */
+    public MockDictServer start() throws IOException {
+        return start(0);
+    }
+
+    /** Starts listening on the loopback interface.
+     *
+     * @param port Port to listen on, or 0 for an ephemeral port.
+     * @return This object.
+     * @throws IOException If the socket could not be bound.
+     */
+    public synchronized MockDictServer start(int port) throws IOException {
+        if (serverSocket != null) {
+            throw new IllegalStateException("server already started");
+        }
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        workers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "dict-mock-" + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        workers.execute(this::accept);
+        return this;
+    }
+
+    /** @return The port the server listens on.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /** @return Number of connections accepted so far.
+     */
+    public long getConnectionCount() {
+        return connections.sum();
+    }
+
+    /** @return Number of commands received so far, on all connections.
+     */
+    public long getCommandCount() {
+        return commands.sum();
+    }
+
+    /** @return Number of replies in which a fault was injected.
+     */
+    public long getFaultCount() {
+        return faults.sum();
+    }
+
+    /** Stops listening and closes every open connection, including stalled ones.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        }
+        catch (IOException e) {
+            System.err.println("exception ignored");
+        }
+        for (Socket socket : sockets) {
+            closeQuietly(socket);
+        }
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.increment();
+                sockets.add(socket);
+                workers.execute(() -> serve(socket));
+            }
+            catch (IOException e) {
+                if (!closed) {
+                    System.err.println("exception ignored");
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+            Reply out = new Reply(s.getOutputStream());
+            out.line("220 mock.dict.server <mime> <" + connections.sum() + "@mock>");
+            out.flush();
+
+            String line;
+            while (!closed && (line = in.readLine()) != null) {
+                commands.increment();
+                if (!handle(line, out)) {
+                    break;
+                }
+            }
+        }
+        catch (SocketException e) {
+            //closed by the client or by close()
+        }
+        catch (IOException | InterruptedException e) {
+            System.err.println("exception ignored");
+        }
+        finally {
+            sockets.remove(socket);
+        }
+    }
+
+    /** Answers one command.
+     *
+     * @return False if the connection must be closed.
+     */
+    private boolean handle(String line, Reply out) throws IOException, InterruptedException {
+        delay();
+
+        Fault injected = fault;
+        if (injected != Fault.NONE && faultRate > 0 && ThreadLocalRandom.current().nextDouble() < faultRate) {
+            faults.increment();
+            switch (injected) {
+                case DISCONNECT:
+                    return false;
+                case UNAVAILABLE:
+                    out.line("420 Server temporarily unavailable");
+                    out.flush();
+                    return true;
+                case SHUTDOWN:
+                    out.line("421 Server shutting down");
+                    out.flush();
+                    return false;
+                case GARBAGE:
+                    out.line("this is not a status line");
+                    out.flush();
+                    return true;
+                case STALL:
+                    while (!closed) {
+                        Thread.sleep(50);
+                    }
+                    return false;
+                case TRUNCATE:
+                    Reply partial = new Reply(null);
+                    answer(line, partial);
+                    out.raw(partial.bytes(), partial.size() / 2);
+                    out.flush();
+                    return false;
+                default:
+                    break;
+            }
+        }
+
+        boolean open = answer(line, out);
+        out.flush();
+        return open;
+    }
+
+    private boolean answer(String line, Reply out) throws IOException {
+        List<String> args = tokenize(line);
+        String command = args.isEmpty() ? "" : args.get(0).toUpperCase(Locale.ROOT);
+        try {
+            switch (command) {
+                case "DEFINE":
+                    if (args.size() != 3) {
+                        out.line("501 Syntax error, illegal parameters");
+                    }
+                    else {
+                        define(args.get(1), args.get(2), out);
+                    }
+                    return true;
+                case "MATCH":
+                    if (args.size() != 4) {
+                        out.line("501 Syntax error, illegal parameters");
+                    }
+                    else {
+                        match(args.get(1), args.get(2), args.get(3), out);
+                    }
+                    return true;
+                case "SHOW":
+                    show(args.size() > 1 ? args.get(1).toUpperCase(Locale.ROOT) : "", out);
+                    return true;
+                case "STATUS":
+                    out.line("210 status [d/m/c = " + commands.sum() + "/0/0]");
+                    return true;
+                case "CLIENT":
+                    out.line("250 ok");
+                    return true;
+                case "QUIT":
+                    out.line("221 Closing Connection");
+                    return false;
+                default:
+                    out.line("500 Syntax error, command not recognized");
+                    return true;
+            }
+        }
+        catch (DictConnectionException e) {
+            out.line("420 Server temporarily unavailable");
+            return true;
+        }
+    }
+
+    private void define(String databaseName, String word, Reply out) throws DictConnectionException {
+        Database database = database(databaseName);
+        if (database == null) {
+            out.line("550 Invalid database, use \"SHOW DB\" for list of databases");
+            return;
+        }
+        Collection<Definition> definitions = corpus.getDefinitions(word, database);
+        if (definitions.isEmpty()) {
+            out.line("552 No match");
+            return;
+        }
+
+        out.line("150 " + definitions.size() + " definitions retrieved");
+        for (Definition definition : definitions) {
+            Database source = definition.getDatabase();
+            out.line("151 " + quote(definition.getWord()) + " " + source.getName() + " "
+                    + quote(source.getDescription()));
+            String text = definition.getDefinition();
+            if (text.endsWith("\n")) {
+                text = text.substring(0, text.length() - 1);
+            }
+            for (String textLine : text.split("\n", -1)) {
+                out.text(textLine);
+            }
+            pad(out);
+            out.line(".");
+        }
+        out.line("250 ok");
+    }
+
+    private void match(String databaseName, String strategyName, String word, Reply out) throws DictConnectionException {
+        Database database = database(databaseName);
+        if (database == null) {
+            out.line("550 Invalid database, use \"SHOW DB\" for list of databases");
+            return;
+        }
+        MatchingStrategy strategy = null;
+        for (MatchingStrategy candidate : corpus.getStrategyList()) {
+            if (candidate.getName().equals(strategyName)) {
+                strategy = candidate;
+            }
+        }
+        if (strategy == null) {
+            out.line("551 Invalid strategy, use \"SHOW STRAT\" for a list of strategies");
+            return;
+        }
+
+        //matches are attributed to their database, so '*' and '!' are expanded here
+        List<String> lines = new ArrayList<>();
+        Collection<Database> databases = "*".equals(databaseName) || "!".equals(databaseName)
+                ? corpus.getDatabaseList() : Collections.singletonList(database);
+        for (Database source : databases) {
+            for (String match : corpus.getMatchList(word, strategy, source)) {
+                lines.add(source.getName() + " " + quote(match));
+            }
+            if (!lines.isEmpty() && "!".equals(databaseName)) {
+                break;
+            }
+        }
+        if (lines.isEmpty()) {
+            out.line("552 No match");
+            return;
+        }
+
+        out.line("152 " + lines.size() + " matches found");
+        for (String match : lines) {
+            out.text(match);
+        }
+        out.line(".");
+        out.line("250 ok");
+    }
+
+    private void show(String what, Reply out) throws DictConnectionException {
+        if ("DB".equals(what) || "DATABASES".equals(what)) {
+            Collection<Database> databases = corpus.getDatabaseList();
+            if (databases.isEmpty()) {
+                out.line("554 No databases present");
+                return;
+            }
+            out.line("110 " + databases.size() + " databases present");
+            for (Database database : databases) {
+                out.text(database.getName() + " " + quote(database.getDescription()));
+            }
+        }
+        else if ("STRAT".equals(what) || "STRATEGIES".equals(what)) {
+            Set<MatchingStrategy> strategies = corpus.getStrategyList();
+            if (strategies.isEmpty()) {
+                out.line("555 No strategies available");
+                return;
+            }
+            out.line("111 " + strategies.size() + " strategies available");
+            for (MatchingStrategy strategy : strategies) {
+                out.text(strategy.getName() + " " + quote(strategy.getDescription()));
+            }
+        }
+        else {
+            out.line("501 Syntax error, illegal parameters");
+            return;
+        }
+        out.line(".");
+        out.line("250 ok");
+    }
+
+    private Database database(String name) throws DictConnectionException {
+        if ("*".equals(name) || "!".equals(name)) {
+            return new Database(name, "");
+        }
+        for (Database database : corpus.getDatabaseList()) {
+            if (database.getName().equals(name)) {
+                return database;
+            }
+        }
+        return null;
+    }
+
+    private void pad(Reply out) {
+        int remaining = padding;
+        while (remaining > 0) {
+            int length = Math.min(remaining, 72);
+            char[] filler = new char[length];
+            Arrays.fill(filler, 'x');
+            out.text(new String(filler));
+            remaining -= length + 2;
+        }
+    }
+
+    private void delay() throws InterruptedException {
+        long min = minLatencyNanos;
+        long max = maxLatencyNanos;
+        if (max > 0) {
+            long nanos = max > min ? ThreadLocalRandom.current().nextLong(min, max + 1) : min;
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        }
+    }
+
+    private static String quote(String text) {
+        return "\"" + text.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    /** Splits a command line into arguments, honouring single and double quotes and backslash escapes.
+     */
+    static List<String> tokenize(String line) {
+        List<String> args = new ArrayList<>();
+        int i = 0;
+        while (i < line.length()) {
+            char c = line.charAt(i);
+            if (c == ' ' || c == '\t') {
+                i++;
+                continue;
+            }
+            StringBuilder arg = new StringBuilder();
+            if (c == '"' || c == '\'') {
+                i++;
+                while (i < line.length() && line.charAt(i) != c) {
+                    if (line.charAt(i) == '\\' && i + 1 < line.length()) {
+                        i++;
+                    }
+                    arg.append(line.charAt(i++));
+                }
+                i++;
+            }
+            else {
+                while (i < line.length() && line.charAt(i) != ' ' && line.charAt(i) != '\t') {
+                    arg.append(line.charAt(i++));
+                }
+            }
+            args.add(arg.toString());
+        }
+        return args;
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        }
+        catch (IOException e) {
+            System.err.println("exception ignored");
+        }
+    }
+
+    /** A reply being written: lines are encoded as UTF-8 and terminated by CR LF, text lines are dot-stuffed.
+     */
+    private static final class Reply {
+
+        private final OutputStream out;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+
+        private Reply(OutputStream out) {
+            this.out = out;
+        }
+
+        void line(String line) {
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            buffer.write(bytes, 0, bytes.length);
+            buffer.write('\r');
+            buffer.write('\n');
+        }
+
+        void text(String line) {
+            line(line.startsWith(".") ? "." + line : line);
+        }
+
+        void raw(byte[] bytes, int length) {
+            buffer.write(bytes, 0, length);
+        }
+
+        byte[] bytes() {
+            return buffer.toByteArray();
+        }
+
+        int size() {
+            return buffer.size();
+        }
+
+        void flush() throws IOException {
+            buffer.writeTo(out);
+            buffer.reset();
+            out.flush();
+        }
+    }
+
+    /** The built-in corpus: databases in insertion order, headwords matched case-insensitively.
+     */
+    private static final class InMemoryCorpus implements DictionaryClient {
+
+        private static final Set<MatchingStrategy> STRATEGIES = Collections.unmodifiableSet(new LinkedHashSet<>(
+                Arrays.asList(new MatchingStrategy("exact", "Match headwords exactly"),
+                        new MatchingStrategy("prefix", "Match prefixes"),
+                        new MatchingStrategy("substring", "Match substring occurring anywhere in a headword"),
+                        new MatchingStrategy("suffix", "Match suffixes"))));
+
+        private final Map<String, Database> databases = new ConcurrentHashMap<>();
+        private final List<String> order = new ArrayList<>();
+        //database name -> lower-case headword -> (headword, text) pairs
+        private final Map<String, SortedMap<String, List<String[]>>> entries = new ConcurrentHashMap<>();
+        private final DatabaseCatalog catalog = new DatabaseCatalog(this::getDatabaseList);
+
+        synchronized void add(String database, String description, String word, String text) {
+            if (!databases.containsKey(database)) {
+                databases.put(database, new Database(database, description));
+                order.add(database);
+                entries.put(database, Collections.synchronizedSortedMap(new TreeMap<>()));
+            }
+            entries.get(database).computeIfAbsent(word.toLowerCase(Locale.ROOT), w -> new ArrayList<>())
+                    .add(new String[] {word, text});
+        }
+
+        @Override
+        public Collection<Definition> getDefinitions(String word, Database database) {
+            List<Definition> definitions = new ArrayList<>();
+            for (Database source : select(database)) {
+                List<String[]> found = entries.get(source.getName()).get(word.toLowerCase(Locale.ROOT));
+                if (found != null) {
+                    for (String[] entry : found) {
+                        Definition definition = new Definition(entry[0], source);
+                        definition.setDefinition(entry[1]);
+                        definitions.add(definition);
+                    }
+                    if ("!".equals(database.getName())) {
+                        break;
+                    }
+                }
+            }
+            return definitions;
+        }
+
+        @Override
+        public Set<String> getMatchList(String word, MatchingStrategy strategy, Database database) {
+            String pattern = word.toLowerCase(Locale.ROOT);
+            Set<String> matches = new LinkedHashSet<>();
+            for (Database source : select(database)) {
+                SortedMap<String, List<String[]>> index = entries.get(source.getName());
+                synchronized (index) {
+                    for (Map.Entry<String, List<String[]>> entry : index.entrySet()) {
+                        String key = entry.getKey();
+                        boolean matched;
+                        switch (strategy.getName()) {
+                            case "exact": matched = key.equals(pattern); break;
+                            case "prefix": matched = key.startsWith(pattern); break;
+                            case "substring": matched = key.contains(pattern); break;
+                            case "suffix": matched = key.endsWith(pattern); break;
+                            default: matched = false;
+                        }
+                        if (matched) {
+                            matches.add(entry.getValue().get(0)[0]);
+                        }
+                    }
+                }
+                if (!matches.isEmpty() && "!".equals(database.getName())) {
+                    break;
+                }
+            }
+            return matches;
+        }
+
+        @Override
+        public synchronized Collection<Database> getDatabaseList() {
+            List<Database> list = new ArrayList<>();
+            for (String name : order) {
+                list.add(databases.get(name));
+            }
+            return list;
+        }
+
+        @Override
+        public Set<MatchingStrategy> getStrategyList() {
+            return STRATEGIES;
+        }
+
+        @Override
+        public DatabaseCatalog getCatalog() {
+            return catalog;
+        }
+
+        @Override
+        public void close() {
+            //nothing to release
+        }
+
+        private Collection<Database> select(Database database) {
+            if ("*".equals(database.getName()) || "!".equals(database.getName())) {
+                return getDatabaseList();
+            }
+            Database known = databases.get(database.getName());
+            return known == null ? Collections.<Database>emptyList() : Collections.singletonList(known);
+        }
+    }
+}